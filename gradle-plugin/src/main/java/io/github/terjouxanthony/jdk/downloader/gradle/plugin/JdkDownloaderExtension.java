@@ -0,0 +1,54 @@
+package io.github.terjouxanthony.jdk.downloader.gradle.plugin;
+
+import org.gradle.api.provider.Property;
+
+/**
+ * Default configuration of the provisioning tasks, set in the 'jdkDownloader' block of the build script.
+ */
+public abstract class JdkDownloaderExtension {
+
+    /**
+     * Operating system, example: linux, windows, mac, solaris
+     */
+    public abstract Property<String> getOs();
+
+    /**
+     * Architecture, example: x64, x32, ppc64, arm
+     */
+    public abstract Property<String> getArchitecture();
+
+    /**
+     * jre or jdk, defaults to jre
+     */
+    public abstract Property<String> getImageType();
+
+    /**
+     * Example: 11, 12, 13, 17 ...
+     */
+    public abstract Property<Integer> getJavaVersion();
+
+    /**
+     * Exact version, it takes precedence over 'javaVersion'. Example: jdk-16.0.1+9
+     */
+    public abstract Property<String> getFullJavaReleaseName();
+
+    /**
+     * If true, always request AdoptOpenJdk API to get the latest version with bugfixes, the task is then never up-to-date.
+     */
+    public abstract Property<Boolean> getDownloadLatest();
+
+    /**
+     * If true, delete the previously downloaded artifacts for the same java version, defaults to true.
+     */
+    public abstract Property<Boolean> getCleanExistingSameMajorVersion();
+
+    /**
+     * If true, only use the JDK/JREs already installed and fail if they are missing, defaults to gradle offline mode (--offline).
+     */
+    public abstract Property<Boolean> getOffline();
+
+    /**
+     * Root folder to store JRE's and JDK's, defaults to $HOME/.m2/java
+     */
+    public abstract Property<String> getRootDir();
+}
@@ -0,0 +1,65 @@
+package io.github.terjouxanthony.jdk.downloader.gradle.plugin;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+
+/**
+ * Adds the 'jdkDownloader' extension and the 'provisionJdk' task, which installs the JDK/JRE configured in the extension.
+ * <p>
+ * More tasks of type {@link ProvisionJdkTask} can be registered, they default to the extension values too.
+ * All of them share a single {@link JdkDownloaderService} for the whole build.
+ * <pre>
+ * {@code
+ * plugins {
+ *     id 'io.github.terjouxanthony.jdk-downloader' version '0.0.1'
+ * }
+ * jdkDownloader {
+ *     os = 'linux'
+ *     architecture = 'x64'
+ *     imageType = 'jdk'
+ *     javaVersion = 16
+ * }
+ * }
+ * </pre>
+ */
+public class JdkDownloaderPlugin implements Plugin<Project> {
+
+    public static final String EXTENSION_NAME = "jdkDownloader";
+    public static final String TASK_NAME = "provisionJdk";
+    private static final String SERVICE_NAME = "jdkDownloaderService";
+
+    @Override
+    public void apply(Project project) {
+        final Provider<JdkDownloaderService> service = project.getGradle().getSharedServices()
+                .registerIfAbsent(SERVICE_NAME, JdkDownloaderService.class, spec -> {
+                });
+
+        final JdkDownloaderExtension extension = project.getExtensions().create(EXTENSION_NAME, JdkDownloaderExtension.class);
+        extension.getImageType().convention("jre");
+        extension.getDownloadLatest().convention(false);
+        extension.getCleanExistingSameMajorVersion().convention(true);
+        extension.getOffline().convention(project.getGradle().getStartParameter().isOffline() || InstallJavaParams.isOfflineByDefault());
+
+        project.getTasks().withType(ProvisionJdkTask.class).configureEach(task -> {
+            task.getDownloaderService().set(service);
+            task.usesService(service);
+            task.getOs().convention(extension.getOs());
+            task.getArchitecture().convention(extension.getArchitecture());
+            task.getImageType().convention(extension.getImageType());
+            task.getJavaVersion().convention(extension.getJavaVersion());
+            task.getFullJavaReleaseName().convention(extension.getFullJavaReleaseName());
+            task.getDownloadLatest().convention(extension.getDownloadLatest());
+            task.getCleanExistingSameMajorVersion().convention(extension.getCleanExistingSameMajorVersion());
+            task.getOffline().convention(extension.getOffline());
+            task.getRootDir().convention(extension.getRootDir());
+            task.getDescriptorFile().convention(project.getLayout().getBuildDirectory().file("jdk-downloader/" + task.getName() + ".properties"));
+        });
+
+        project.getTasks().register(TASK_NAME, ProvisionJdkTask.class, task -> {
+            task.setGroup("build setup");
+            task.setDescription("Downloads and installs the JDK/JRE configured in the '" + EXTENSION_NAME + "' extension");
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.terjouxanthony.jdk.downloader.gradle.plugin;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.JavaDownloader;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import io.github.terjouxanthony.adopt.openjdk.downloader.SingleFlight;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Build service shared by all the provisioning tasks of a build, whatever their project.
+ * It holds a single {@link JavaDownloader}, and tasks with the same configuration running in parallel wait for a single install.
+ */
+public abstract class JdkDownloaderService implements BuildService<BuildServiceParameters.None> {
+
+    private final Map<String, JavaInstallDescription> installs = new ConcurrentHashMap<>();
+    private final SingleFlight<String, JavaInstallDescription> inFlightInstalls = new SingleFlight<>();
+    private volatile JavaDownloader javaDownloader;
+
+    /**
+     * @param configuration every parameter the install depends on
+     */
+    public JavaInstallDescription install(String configuration, InstallJavaParams params) throws Exception {
+        final JavaInstallDescription installed = installs.get(configuration);
+        if (installed != null && Files.isDirectory(installed.getJdkHomePath())) {
+            return installed;
+        }
+        return inFlightInstalls.execute(configuration, () -> {
+            final JavaInstallDescription installation = getJavaDownloader().installJava(params);
+            installs.put(configuration, installation);
+            return installation;
+        });
+    }
+
+    private JavaDownloader getJavaDownloader() {
+        if (javaDownloader == null) {
+            synchronized (this) {
+                if (javaDownloader == null) {
+                    javaDownloader = new JavaDownloader();
+                }
+            }
+        }
+        return javaDownloader;
+    }
+}
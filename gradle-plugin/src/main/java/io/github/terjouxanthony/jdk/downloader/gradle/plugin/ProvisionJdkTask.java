@@ -0,0 +1,167 @@
+package io.github.terjouxanthony.jdk.downloader.gradle.plugin;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams.InstallJavaParamsBuilder;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Downloads and installs a general availability hotspot JDK/JRE from AdoptOpenJDK vendor.
+ * <p>
+ * The install is described by a properties file, the task output, with the keys 'jdkHome' and 'installPath'.
+ * The task is up-to-date while its inputs don't change and the described java home still exists,
+ * unless 'downloadLatest' is set since a newer release may be out.
+ */
+@DisableCachingByDefault(because = "The JDK/JRE is installed outside of the build directory, it can't be restored from the build cache")
+public abstract class ProvisionJdkTask extends DefaultTask {
+
+    @Input
+    public abstract Property<String> getOs();
+
+    @Input
+    public abstract Property<String> getArchitecture();
+
+    @Input
+    public abstract Property<String> getImageType();
+
+    @Input
+    @Optional
+    public abstract Property<Integer> getJavaVersion();
+
+    @Input
+    @Optional
+    public abstract Property<String> getFullJavaReleaseName();
+
+    @Input
+    public abstract Property<Boolean> getDownloadLatest();
+
+    @Input
+    public abstract Property<Boolean> getCleanExistingSameMajorVersion();
+
+    @Input
+    public abstract Property<Boolean> getOffline();
+
+    @Input
+    @Optional
+    public abstract Property<String> getRootDir();
+
+    @OutputFile
+    public abstract RegularFileProperty getDescriptorFile();
+
+    @Internal
+    public abstract Property<JdkDownloaderService> getDownloaderService();
+
+    public ProvisionJdkTask() {
+        getOutputs().upToDateWhen(new InstalledJdkStillExists());
+    }
+
+    /**
+     * @return the java home of the installed JDK/JRE, consumers of this provider depend on this task.
+     */
+    @Internal
+    public Provider<String> getJdkHome() {
+        return getDescriptorFile().map(file -> readDescriptor(file).getProperty("jdkHome"));
+    }
+
+    @TaskAction
+    public void provision() throws Exception {
+        final ImageType imageType = parseImageType(getImageType().get());
+        InstallJavaParamsBuilder builder = InstallJavaParams.builder()
+                .os(getOs().get())
+                .arch(getArchitecture().get())
+                .imageType(imageType)
+                .downloadLatest(getDownloadLatest().get())
+                .cleanExistingSameMajorVersion(getCleanExistingSameMajorVersion().get())
+                .offline(getOffline().get());
+
+        if (getRootDir().isPresent()) {
+            builder = builder.javaDownloaderDir(Paths.get(getRootDir().get()));
+        }
+
+        final String requestedVersion;
+        if (getFullJavaReleaseName().isPresent()) {
+            builder = builder.fullJavaReleaseName(getFullJavaReleaseName().get());
+            requestedVersion = getFullJavaReleaseName().get();
+        } else if (getJavaVersion().isPresent()) {
+            builder = builder.javaVersion(getJavaVersion().get());
+            requestedVersion = String.valueOf(getJavaVersion().get());
+        } else {
+            throw new GradleException("Either 'javaVersion' (eg. 16) or 'fullJavaReleaseName' (eg. jdk-16.0.1+9) must be set");
+        }
+
+        final String configuration = String.join("|", imageType.getValue(), getOs().get(), getArchitecture().get(), requestedVersion,
+                String.valueOf(getDownloadLatest().get()), String.valueOf(getCleanExistingSameMajorVersion().get()), getRootDir().getOrElse(""),
+                String.valueOf(getOffline().get()));
+        final JavaInstallDescription installation = getDownloaderService().get().install(configuration, builder.build());
+
+        final Properties descriptor = new Properties();
+        descriptor.setProperty("jdkHome", installation.getJdkHomePath().toAbsolutePath().toString());
+        descriptor.setProperty("installPath", installation.getInstallPath().toAbsolutePath().toString());
+        final Path descriptorFile = getDescriptorFile().get().getAsFile().toPath();
+        Files.createDirectories(descriptorFile.getParent());
+        try (OutputStream out = Files.newOutputStream(descriptorFile)) {
+            descriptor.store(out, null);
+        }
+        getLogger().lifecycle("{} HOME is {}", imageType, installation.getJdkHomePath());
+    }
+
+    private static ImageType parseImageType(String imageType) {
+        if ("jdk".equalsIgnoreCase(imageType)) {
+            return ImageType.JDK;
+        }
+        if ("jre".equalsIgnoreCase(imageType)) {
+            return ImageType.JRE;
+        }
+        throw new GradleException("Invalid 'imageType' parameter, must be either jdk or jre");
+    }
+
+    private static Properties readDescriptor(RegularFile file) {
+        final Properties descriptor = new Properties();
+        try (InputStream in = Files.newInputStream(file.getAsFile().toPath())) {
+            descriptor.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return descriptor;
+    }
+
+    /* A static class rather than a lambda, so that it is serializable by the configuration cache */
+    private static class InstalledJdkStillExists implements Spec<Task> {
+        @Override
+        public boolean isSatisfiedBy(Task task) {
+            final ProvisionJdkTask provisionTask = (ProvisionJdkTask) task;
+            if (provisionTask.getDownloadLatest().get()) {
+                return false;
+            }
+            final RegularFile file = provisionTask.getDescriptorFile().get();
+            if (!file.getAsFile().isFile()) {
+                return false;
+            }
+            final String jdkHome = readDescriptor(file).getProperty("jdkHome");
+            return jdkHome != null && Files.isDirectory(Paths.get(jdkHome));
+        }
+    }
+}
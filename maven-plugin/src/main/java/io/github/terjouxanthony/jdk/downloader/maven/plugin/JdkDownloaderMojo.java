@@ -1,11 +1,13 @@
 package io.github.terjouxanthony.jdk.downloader.maven.plugin;
 
-import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester;
-import io.github.terjouxanthony.adopt.openjdk.downloader.JavaDownloader;
+import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester.HttpStatusException;
+import io.github.terjouxanthony.adopt.openjdk.downloader.JavaReleaseVersion;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams.InstallJavaParamsBuilder;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import io.github.terjouxanthony.jdk.downloader.maven.plugin.ToolchainsWriter.InstalledRuntime;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -14,10 +16,24 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Downloads and installs a general availability hotspot JDK/JRE from AdoptOpenJDK vendor.
@@ -33,6 +49,15 @@ import java.time.Duration;
  * The plugin executes in the PREPARE_PACKAGE lifecycle phase, so other plugins can use the above properties if they are bound to the PACKAGE phase.
  * Example of properties usage: ${jdk-downloader-maven-plugin.jdk-home}.
  * <p>
+ * Several JDK/JREs can be installed in parallel by one execution, with the 'runtimes' parameter.
+ * Runtimes with the same image type, major version, os and architecture share an install folder, they are installed one after the other.
+ * Each runtime then sets the properties <b>jdk-downloader-maven-plugin.&lt;id&gt;.jdk-install-path</b> and <b>jdk-downloader-maven-plugin.&lt;id&gt;.jdk-home</b>.
+ * <p>
+ * The installed JDK/JREs are also listed in a toolchains file, by default target/jdk-downloader/toolchains.xml,
+ * which can be passed to maven with --global-toolchains or merged in ~/.m2/toolchains.xml.
+ * <p>
+ * In a multi-module build, the JDK/JRE is installed by the first module only, other modules with the same configuration reuse it.
+ * <p>
  * Example of the plugin's usage:
  * <pre>
  * {@code
@@ -55,31 +80,48 @@ import java.time.Duration;
  * </plugin>
  * }
  * </pre>
+ * Example with several runtimes, unset values are taken from the plugin configuration:
+ * <pre>
+ * {@code
+ * <configuration>
+ *     <imageType>jdk</imageType>
+ *     <runtimes>
+ *         <runtime><os>linux</os><architecture>x64</architecture><javaVersion>11</javaVersion></runtime>
+ *         <runtime><id>windows-16</id><os>windows</os><architecture>x64</architecture><javaVersion>16</javaVersion></runtime>
+ *     </runtimes>
+ * </configuration>
+ * }
+ * </pre>
  */
-@Mojo(name = "download-java", defaultPhase = LifecyclePhase.PREPARE_PACKAGE)
+@Mojo(name = "download-java", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, threadSafe = true)
 public class JdkDownloaderMojo extends AbstractMojo {
 
+    private static final String PROPERTY_PREFIX = "jdk-downloader-maven-plugin.";
+
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     MavenProject project;
 
-    // Mandatory params:
+    @Parameter(defaultValue = "${session.request.startTime}", required = true, readonly = true)
+    Date sessionStartTime;
+
+    // Mandatory params, unless they are set on every runtime:
 
     /**
      * Architecture, example: x64, x32, ppc64, arm
      */
-    @Parameter(property = "architecture", required = true)
+    @Parameter(property = "architecture")
     String architecture;
 
     /**
      * Operating system, example: linux, windows, mac, solaris
      */
-    @Parameter(property = "os", required = true)
+    @Parameter(property = "os")
     String os;
 
     /**
      * jre or jdk
      */
-    @Parameter(property = "imageType", required = true)
+    @Parameter(property = "imageType")
     String imageType;
 
     // Optional params:
@@ -97,6 +139,12 @@ public class JdkDownloaderMojo extends AbstractMojo {
     @Parameter(property = "cleanExistingSameMajorVersion", defaultValue = "true")
     Boolean cleanExistingSameMajorVersion;
 
+    /**
+     * Optional flag. If true, only use the JDK/JREs already installed and fail if they are missing, defaults to maven offline mode (-o).
+     */
+    @Parameter(property = "jdkDownloaderOffline", defaultValue = "${settings.offline}")
+    Boolean offline;
+
     /**
      * Optional value. Root folder to store JRE's and JDK's, defaults to $HOME/.m2/java
      */
@@ -117,44 +165,208 @@ public class JdkDownloaderMojo extends AbstractMojo {
     @Parameter(property = "fullJavaReleaseName")
     String fullJavaReleaseName; // optional
 
+    /**
+     * Optional list of JDK/JREs to install instead of the single one configured by the parameters above, which then act as defaults.
+     */
+    @Parameter
+    List<RuntimeConfiguration> runtimes;
+
+    /**
+     * Optional value. Maximum number of runtimes installed at the same time.
+     */
+    @Parameter(property = "parallelism", defaultValue = "4")
+    Integer parallelism;
+
+    /**
+     * Optional value. Toolchains file listing the installed JDK/JREs.
+     */
+    @Parameter(property = "toolchainsFile", defaultValue = "${project.build.directory}/jdk-downloader/toolchains.xml")
+    File toolchainsFile;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         try {
             final long start = System.nanoTime();
 
-            JavaDownloader javaDownloader = new JavaDownloader();
+            final List<InstalledRuntime> installedRuntimes;
+            if (runtimes == null || runtimes.isEmpty()) {
+                final InstalledRuntime runtime = installRuntime(new RuntimeConfiguration(), cleanExistingSameMajorVersion);
+                setProperties("", runtime.getInstallation());
+                installedRuntimes = Collections.singletonList(runtime);
+            } else {
+                installedRuntimes = installRuntimesInParallel();
+                for (InstalledRuntime runtime : installedRuntimes) {
+                    setProperties(runtime.getId() + ".", runtime.getInstallation());
+                }
+            }
 
-            InstallJavaParamsBuilder builder = Model.InstallJavaParams.builder()
-                    .arch(architecture)
-                    .os(os)
-                    .imageType(getImageType())
-                    .downloadLatest(downloadLatest)
-                    .cleanExistingSameMajorVersion(cleanExistingSameMajorVersion);
+            new ToolchainsWriter().write(toolchainsFile.toPath(), installedRuntimes);
 
-            if (rootDir != null) {
-                builder = builder.javaDownloaderDir(Paths.get(rootDir));
+            final long end = System.nanoTime();
+            final long elapsedMillis = Duration.ofNanos(end - start).toMillis();
+            for (InstalledRuntime runtime : installedRuntimes) {
+                getLog().info(runtime.getId() + " HOME is " + runtime.getInstallation().getJdkHomePath());
             }
+            getLog().info(installedRuntimes.size() + " runtime(s) ready, took " + elapsedMillis + " ms, toolchains written to " + toolchainsFile);
 
-            if (fullJavaReleaseName != null) {
-                builder = builder.fullJavaReleaseName(fullJavaReleaseName);
-            } else {
-                builder = builder.javaVersion(getJavaVersion());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write toolchains file " + toolchainsFile + ": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw new MojoExecutionException(e.getMessage(), e); // a RuntimeException would be reported as a maven internal error
+        }
+    }
+
+    /**
+     * Runtimes installed in the same folder, ie. with the same image type, major version, os and architecture, are installed one after the other
+     * without cleaning, else each one would delete the others. The folder is cleaned once they are all installed, keeping all of them.
+     */
+    private List<InstalledRuntime> installRuntimesInParallel() throws MojoExecutionException {
+        final Map<String, List<RuntimeConfiguration>> runtimesByInstallFolder = new LinkedHashMap<>();
+        for (RuntimeConfiguration runtime : runtimes) {
+            runtimesByInstallFolder.computeIfAbsent(installFolderKey(runtime), key -> new ArrayList<>()).add(runtime);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, runtimesByInstallFolder.size())));
+        try {
+            final List<Future<List<InstalledRuntime>>> futures = new ArrayList<>();
+            for (List<RuntimeConfiguration> sameFolderRuntimes : runtimesByInstallFolder.values()) {
+                futures.add(executor.submit(() -> {
+                    final List<InstalledRuntime> installed = new ArrayList<>();
+                    for (RuntimeConfiguration runtime : sameFolderRuntimes) {
+                        installed.add(installRuntime(runtime, cleanExistingSameMajorVersion && sameFolderRuntimes.size() == 1));
+                    }
+                    if (cleanExistingSameMajorVersion && sameFolderRuntimes.size() > 1) {
+                        cleanInstallsExcept(sameFolderRuntimes.get(0), installed);
+                    }
+                    return installed;
+                }));
+            }
+            final Map<RuntimeConfiguration, InstalledRuntime> installedRuntimes = new IdentityHashMap<>();
+            final Iterator<List<RuntimeConfiguration>> groups = runtimesByInstallFolder.values().iterator();
+            for (Future<List<InstalledRuntime>> future : futures) {
+                final Iterator<RuntimeConfiguration> group = groups.next().iterator();
+                try {
+                    for (InstalledRuntime installed : future.get()) {
+                        installedRuntimes.put(group.next(), installed);
+                    }
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof MojoExecutionException) {
+                        throw (MojoExecutionException) e.getCause();
+                    }
+                    throw new MojoExecutionException("Failed to install runtime: " + e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while installing runtimes", e);
+                }
             }
+            final List<InstalledRuntime> inConfigurationOrder = new ArrayList<>();
+            for (RuntimeConfiguration runtime : runtimes) {
+                inConfigurationOrder.add(installedRuntimes.get(runtime));
+            }
+            return inConfigurationOrder;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            final JavaInstallDescription installation = javaDownloader.installJava(builder.build());
+    private String installFolderKey(RuntimeConfiguration runtime) throws MojoExecutionException {
+        final String requestedVersion = requestedVersion(runtime);
+        final String majorVersion = JavaReleaseVersion.parse(requestedVersion)
+                .map(version -> String.valueOf(version.getFeatureVersion()))
+                .orElse(requestedVersion);
+        return String.join("|",
+                getImageType(runtime.imageType != null ? runtime.imageType : imageType).getValue(),
+                majorVersion,
+                required(runtime.os != null ? runtime.os : os, "os"),
+                required(runtime.architecture != null ? runtime.architecture : architecture, "architecture"));
+    }
 
-            project.getProperties().setProperty("jdk-downloader-maven-plugin.jdk-install-path",
-                    installation.getInstallPath().toAbsolutePath().toString()); // Folder containing the downloaded JDK/JRE
+    private void setProperties(String prefix, JavaInstallDescription installation) {
+        project.getProperties().setProperty(PROPERTY_PREFIX + prefix + "jdk-install-path",
+                installation.getInstallPath().toAbsolutePath().toString()); // Folder containing the downloaded JDK/JRE
 
-            project.getProperties().setProperty("jdk-downloader-maven-plugin.jdk-home",
-                    installation.getJdkHomePath().toAbsolutePath().toString());  // JAVA_HOME path for this JDK/JRE
+        project.getProperties().setProperty(PROPERTY_PREFIX + prefix + "jdk-home",
+                installation.getJdkHomePath().toAbsolutePath().toString());  // JAVA_HOME path for this JDK/JRE
+    }
 
-            final long end = System.nanoTime();
-            final long elapsedMillis = Duration.ofNanos(end - start).toMillis();
-            getLog().info(getImageType() + " HOME is " + installation.getJdkHomePath() + " , took " + elapsedMillis + " ms");
+    private void cleanInstallsExcept(RuntimeConfiguration runtime, List<InstalledRuntime> keptRuntimes) throws MojoExecutionException {
+        final List<Path> keptInstalls = new ArrayList<>();
+        for (InstalledRuntime keptRuntime : keptRuntimes) {
+            keptInstalls.add(keptRuntime.getInstallation().getInstallPath());
+        }
+        try {
+            ReactorInstallCache.cleanInstallsExcept(installParams(runtime, true), keptInstalls);
+        } catch (IOException | RuntimeException e) {
+            throw new MojoExecutionException("Failed to clean installs other than " + keptInstalls + ": " + e.getMessage(), e);
+        }
+    }
+
+    private InstalledRuntime installRuntime(RuntimeConfiguration runtime, boolean clean) throws MojoExecutionException {
+        final String runtimeOs = required(runtime.os != null ? runtime.os : os, "os");
+        final String runtimeArchitecture = required(runtime.architecture != null ? runtime.architecture : architecture, "architecture");
+        final ImageType runtimeImageType = getImageType(runtime.imageType != null ? runtime.imageType : imageType);
+        final String requestedVersion = requestedVersion(runtime);
+
+        final InstallJavaParams params = installParams(runtime, clean);
+        final String configuration = String.join("|", runtimeImageType.getValue(), runtimeOs, runtimeArchitecture, requestedVersion,
+                String.valueOf(downloadLatest), String.valueOf(clean), String.valueOf(rootDir), String.valueOf(params.isOffline()));
+        final JavaInstallDescription installation;
+        try {
+            installation = ReactorInstallCache.install(String.valueOf(sessionStartTime.getTime()), configuration, params);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while installing " + configuration, e);
+        } catch (IOException | URISyntaxException | HttpStatusException | RuntimeException e) {
+            throw new MojoExecutionException("Failed to install " + configuration + ": " + e.getMessage(), e);
+        }
+
+        final String id = runtime.id != null ? runtime.id
+                : runtimeImageType.getValue() + "-" + requestedVersion + "-" + runtimeOs + "_" + runtimeArchitecture;
+        return new InstalledRuntime(id, runtimeImageType, requestedVersion, runtimeOs, runtimeArchitecture, installation);
+    }
+
+    private InstallJavaParams installParams(RuntimeConfiguration runtime, boolean clean) throws MojoExecutionException {
+        final String runtimeOs = required(runtime.os != null ? runtime.os : os, "os");
+        final String runtimeArchitecture = required(runtime.architecture != null ? runtime.architecture : architecture, "architecture");
+        final ImageType runtimeImageType = getImageType(runtime.imageType != null ? runtime.imageType : imageType);
+
+        InstallJavaParamsBuilder builder = Model.InstallJavaParams.builder()
+                .arch(runtimeArchitecture)
+                .os(runtimeOs)
+                .imageType(runtimeImageType)
+                .downloadLatest(downloadLatest)
+                .cleanExistingSameMajorVersion(clean)
+                .offline(offline || InstallJavaParams.isOfflineByDefault());
+
+        if (rootDir != null) {
+            builder = builder.javaDownloaderDir(Paths.get(rootDir));
+        }
+
+        final String requestedVersion = requestedVersion(runtime);
+        if (runtime.fullJavaReleaseName != null || (runtime.javaVersion == null && fullJavaReleaseName != null)) {
+            builder = builder.fullJavaReleaseName(requestedVersion);
+        } else {
+            builder = builder.javaVersion(Integer.parseInt(requestedVersion));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the full release name, eg. jdk-16.0.1+9, else the java version, eg. 16
+     */
+    private String requestedVersion(RuntimeConfiguration runtime) throws MojoExecutionException {
+        if (runtime.fullJavaReleaseName != null) {
+            return runtime.fullJavaReleaseName;
+        } else if (runtime.javaVersion == null && fullJavaReleaseName != null) {
+            return fullJavaReleaseName;
+        }
+        return String.valueOf(runtime.javaVersion != null ? runtime.javaVersion : getJavaVersion());
+    }
 
-        } catch (IOException | InterruptedException | URISyntaxException | HttpRequester.HttpStatusException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
+    private static String required(String value, String name) throws MojoExecutionException {
+        if (value == null) {
+            throw new MojoExecutionException("Missing '" + name + "' parameter, it must be set either on the plugin or on every runtime");
         }
+        return value;
     }
 
     private int getJavaVersion() throws MojoExecutionException {
@@ -163,13 +375,17 @@ public class JdkDownloaderMojo extends AbstractMojo {
         }
         final Object targetVersion = project.getProperties().get("maven.compiler.target");
         if (targetVersion != null) {
-            return Integer.parseInt((String) targetVersion);
+            try {
+                return Integer.parseInt((String) targetVersion);
+            } catch (NumberFormatException e) {
+                throw new MojoExecutionException("Invalid property 'maven.compiler.target' " + targetVersion + ", set the parameter 'javaVersion'", e);
+            }
         }
         throw new MojoExecutionException("No java version, you must either set the parameter 'javaVersion' or set the property 'maven.compiler.target'");
 
     }
 
-    private ImageType getImageType() throws MojoExecutionException {
+    private static ImageType getImageType(String imageType) throws MojoExecutionException {
         if ("jdk".equalsIgnoreCase(imageType)) {
             return ImageType.JDK;
         }
@@ -0,0 +1,68 @@
+package io.github.terjouxanthony.jdk.downloader.maven.plugin;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester.HttpStatusException;
+import io.github.terjouxanthony.adopt.openjdk.downloader.JavaDownloader;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import io.github.terjouxanthony.adopt.openjdk.downloader.SingleFlight;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Installations shared by all the executions of the plugin in a build session.
+ * <p>
+ * Maven loads the plugin classes once per build, so every module of a reactor sees this state.
+ * The first execution with a given configuration installs the JDK/JRE. Concurrent executions of a parallel build (-T) wait for that install.
+ * Later executions only check that the java home folder still exists.
+ */
+final class ReactorInstallCache {
+
+    private static final Map<String, JavaInstallDescription> INSTALLS = new ConcurrentHashMap<>();
+    private static final SingleFlight<String, JavaInstallDescription> IN_FLIGHT_INSTALLS = new SingleFlight<>();
+
+    private ReactorInstallCache() {
+    }
+
+    /**
+     * @param sessionId     identifies the build session, entries of other sessions (eg. in a long-lived maven daemon) are discarded
+     * @param configuration every parameter the install depends on
+     */
+    static JavaInstallDescription install(String sessionId, String configuration, InstallJavaParams params)
+            throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        final String key = sessionId + "|" + configuration;
+        final JavaInstallDescription installed = INSTALLS.get(key);
+        if (installed != null && Files.isDirectory(installed.getJdkHomePath())) {
+            return installed;
+        }
+        try {
+            return IN_FLIGHT_INSTALLS.execute(key, () -> {
+                INSTALLS.keySet().removeIf(otherKey -> !otherKey.startsWith(sessionId + "|"));
+                final JavaInstallDescription installation = DownloaderHolder.JAVA_DOWNLOADER.installJava(params);
+                INSTALLS.put(key, installation);
+                return installation;
+            });
+        } catch (IOException | InterruptedException | URISyntaxException | HttpStatusException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // JavaDownloader#installJava throws nothing else
+        }
+    }
+
+    /**
+     * @see JavaDownloader#cleanInstallsExcept
+     */
+    static void cleanInstallsExcept(InstallJavaParams params, Collection<Path> keptInstalls) throws IOException {
+        DownloaderHolder.JAVA_DOWNLOADER.cleanInstallsExcept(params, keptInstalls);
+    }
+
+    /* Created on first use, its http client is shared by the whole reactor */
+    private static final class DownloaderHolder {
+        private static final JavaDownloader JAVA_DOWNLOADER = new JavaDownloader();
+    }
+}
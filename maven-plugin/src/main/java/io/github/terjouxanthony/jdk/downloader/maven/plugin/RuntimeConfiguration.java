@@ -0,0 +1,42 @@
+package io.github.terjouxanthony.jdk.downloader.maven.plugin;
+
+/**
+ * One JDK/JRE to install, set in the 'runtimes' parameter of the plugin.
+ * Unset values default to the parameters of the same name set on the plugin itself.
+ */
+public class RuntimeConfiguration {
+
+    /**
+     * Optional value. Name of the runtime in project properties and in the toolchains file,
+     * defaults to imageType-version-os_architecture, example: jdk-16-linux_x64
+     */
+    String id;
+
+    /**
+     * Architecture, example: x64, x32, ppc64, arm
+     */
+    String architecture;
+
+    /**
+     * Operating system, example: linux, windows, mac, solaris
+     */
+    String os;
+
+    /**
+     * jre or jdk
+     */
+    String imageType;
+
+    /**
+     * Example: 11, 12, 13, 17 ...
+     */
+    Integer javaVersion;
+
+    /**
+     * Exact version, it takes precedence over 'javaVersion'. Example: jdk-16.0.1+9
+     */
+    String fullJavaReleaseName;
+
+    public RuntimeConfiguration() {
+    }
+}
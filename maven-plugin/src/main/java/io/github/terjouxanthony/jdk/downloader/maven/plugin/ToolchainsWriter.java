@@ -0,0 +1,100 @@
+package io.github.terjouxanthony.jdk.downloader.maven.plugin;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.JavaReleaseVersion;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a maven toolchains file with a 'jdk' toolchain per installed runtime, so that toolchain aware plugins
+ * (compiler, surefire, javadoc ...) can select them by version, vendor or id.
+ */
+class ToolchainsWriter {
+
+    void write(Path toolchainsFile, List<InstalledRuntime> runtimes) throws IOException {
+        final StringBuilder xml = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<toolchains>\n");
+        for (InstalledRuntime runtime : runtimes) {
+            xml.append("  <toolchain>\n")
+                    .append("    <type>jdk</type>\n")
+                    .append("    <provides>\n")
+                    .append("      <id>").append(escape(runtime.getId())).append("</id>\n")
+                    .append("      <version>").append(escape(toolchainVersion(runtime.getRequestedVersion()))).append("</version>\n")
+                    .append("      <vendor>adoptopenjdk</vendor>\n")
+                    .append("      <imageType>").append(runtime.getImageType().getValue()).append("</imageType>\n")
+                    .append("      <os>").append(escape(runtime.getOs())).append("</os>\n")
+                    .append("      <arch>").append(escape(runtime.getArchitecture())).append("</arch>\n")
+                    .append("    </provides>\n")
+                    .append("    <configuration>\n")
+                    .append("      <jdkHome>").append(escape(runtime.getInstallation().getJdkHomePath().toAbsolutePath().toString())).append("</jdkHome>\n")
+                    .append("    </configuration>\n")
+                    .append("  </toolchain>\n");
+        }
+        xml.append("</toolchains>\n");
+
+        Files.createDirectories(toolchainsFile.toAbsolutePath().getParent());
+        Files.write(toolchainsFile, xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Toolchain requirements are version ranges, so release names are turned into plain versions, eg. jdk-16.0.1+9 into 16.0.1
+     */
+    private static String toolchainVersion(String requestedVersion) {
+        return JavaReleaseVersion.parse(requestedVersion)
+                .map(version -> version.getNumbers().stream().map(String::valueOf).collect(Collectors.joining(".")))
+                .orElse(requestedVersion);
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    static class InstalledRuntime {
+        private final String id;
+        private final ImageType imageType;
+        private final String requestedVersion;
+        private final String os;
+        private final String architecture;
+        private final JavaInstallDescription installation;
+
+        InstalledRuntime(String id, ImageType imageType, String requestedVersion, String os, String architecture, JavaInstallDescription installation) {
+            this.id = id;
+            this.imageType = imageType;
+            this.requestedVersion = requestedVersion;
+            this.os = os;
+            this.architecture = architecture;
+            this.installation = installation;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        ImageType getImageType() {
+            return imageType;
+        }
+
+        String getRequestedVersion() {
+            return requestedVersion;
+        }
+
+        String getOs() {
+            return os;
+        }
+
+        String getArchitecture() {
+            return architecture;
+        }
+
+        JavaInstallDescription getInstallation() {
+            return installation;
+        }
+    }
+}
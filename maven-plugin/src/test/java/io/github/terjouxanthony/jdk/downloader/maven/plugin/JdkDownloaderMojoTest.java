@@ -0,0 +1,73 @@
+package io.github.terjouxanthony.jdk.downloader.maven.plugin;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JdkDownloaderMojoTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void should_keep_every_runtime_of_an_install_folder_across_builds() throws Exception {
+        //given
+        final Path rootDir = tempDir.resolve("java");
+        final Path latestInstall = makeInstall(rootDir, "jdk-16.0.1+9");
+        final Path olderInstall = makeInstall(rootDir, "jdk-16+36");
+        final Path supersededInstall = makeInstall(rootDir, "jdk-16.0.0+1");
+
+        //when
+        final JdkDownloaderMojo firstBuild = offlineMojo(rootDir, new Date(1000));
+        firstBuild.execute();
+        final JdkDownloaderMojo secondBuild = offlineMojo(rootDir, new Date(2000));
+        secondBuild.execute();
+
+        //then
+        assertThat(latestInstall).isDirectory();
+        assertThat(olderInstall).isDirectory();
+        assertThat(supersededInstall).doesNotExist();
+        assertThat(secondBuild.project.getProperties().getProperty("jdk-downloader-maven-plugin.older.jdk-install-path"))
+                .isEqualTo(olderInstall.toAbsolutePath().toString());
+    }
+
+    private JdkDownloaderMojo offlineMojo(Path rootDir, Date sessionStartTime) {
+        final JdkDownloaderMojo mojo = new JdkDownloaderMojo();
+        mojo.project = new MavenProject();
+        mojo.sessionStartTime = sessionStartTime;
+        mojo.os = "linux";
+        mojo.architecture = "x64";
+        mojo.imageType = "jre";
+        mojo.downloadLatest = false;
+        mojo.cleanExistingSameMajorVersion = true;
+        mojo.offline = true;
+        mojo.rootDir = rootDir.toString();
+        mojo.parallelism = 2;
+        mojo.toolchainsFile = tempDir.resolve("toolchains.xml").toFile();
+        mojo.runtimes = Arrays.asList(runtime("latest", "jdk-16.0.1+9"), runtime("older", "jdk-16+36"));
+        return mojo;
+    }
+
+    private static RuntimeConfiguration runtime(String id, String fullJavaReleaseName) {
+        final RuntimeConfiguration runtime = new RuntimeConfiguration();
+        runtime.id = id;
+        runtime.fullJavaReleaseName = fullJavaReleaseName;
+        return runtime;
+    }
+
+    private static Path makeInstall(Path rootDir, String releaseName) throws IOException {
+        final Path installFolder = rootDir.resolve("jre/16/linux_x64").resolve(releaseName + "--2021-04-23T09-10-06Z--linux_x64");
+        Files.createDirectories(installFolder.resolve(releaseName + "-jre/bin"));
+        Files.write(installFolder.resolve(releaseName + "-jre/bin/java"), "java".getBytes(StandardCharsets.UTF_8));
+        return installFolder;
+    }
+}
@@ -1,2 +1,3 @@
-
-set MAVEN_OPTS="-Xmx30m" && mvn -q compile exec:java -Dexec.args="hello world"
\ No newline at end of file
+@rem Runs the command line interface, eg. run.bat install --os windows --arch x64 --version 16
+@rem Build it first with: mvn -q package -Pcds -DskipTests
+java -XX:TieredStopAtLevel=1 -Xshare:auto -XX:SharedArchiveFile="%~dp0target\java-downloader.jsa" -cp "%~dp0target\adopt.openjdk.downloader-0.0.1.jar;%~dp0target\lib\*" io.github.terjouxanthony.adopt.openjdk.downloader.cli.JavaDownloaderCli %*
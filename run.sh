@@ -1,3 +1,11 @@
 #!/bin/bash
 
-MAVEN_OPTS="-Xmx30m" mvn -q compile exec:java -Dexec.args="hello world"
+# Runs the command line interface, eg. ./run.sh install --os linux --arch x64 --version 16
+# Build it first with: mvn -q package -Pcds -DskipTests
+# The AppCDS archive is only used by the JDK which built it, other JDKs ignore it.
+
+DIR="$(cd "$(dirname "$0")" && pwd)"
+
+exec java -XX:TieredStopAtLevel=1 -Xshare:auto -XX:SharedArchiveFile="$DIR/target/java-downloader.jsa" \
+  -cp "$DIR/target/adopt.openjdk.downloader-0.0.1.jar:$DIR/target/lib/*" \
+  io.github.terjouxanthony.adopt.openjdk.downloader.cli.JavaDownloaderCli "$@"
@@ -4,31 +4,42 @@ import com.fasterxml.jackson.databind.JsonNode;
 import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester.HttpStatusException;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ListReleasesRequest;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.Platform;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseBinaries;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseInfo;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseInfoRequest;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseNamesRequest;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import okhttp3.Headers;
 import okhttp3.ResponseBody;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static io.github.terjouxanthony.adopt.openjdk.downloader.Utils.MAPPER;
 
+@Slf4j
 @AllArgsConstructor
 public class AdoptOpenJdkApi {
+    private static final int MAX_RELEASES_SEARCHED = 10;
+
     private final HttpRequester httpRequester;
+    /* concurrent identical requests, eg. from the modules of a parallel build, share a single http request */
+    private final SingleFlight<Object, ReleaseInfo> releaseInfoRequests = new SingleFlight<>();
 
     public ReleaseInfo getLatestJavaRelaseInfo(int javaVersion, String arch, String os, ImageType imageType) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
-        final String releases = listFeatureReleases(new ListReleasesRequest(
+        final ListReleasesRequest request = new ListReleasesRequest(
                 javaVersion,
                 Model.ReleaseType.GENERAL_AVAILABILITY,
                 arch,
@@ -36,22 +47,90 @@ public class AdoptOpenJdkApi {
                 Model.JvmImpl.HOTSPOT,
                 os,
                 Model.Vendor.ADOPT_OPENJDK
-        ), 0, 1);
-
-        return parseReleaseInfo(MAPPER.readTree(releases).get(0));
+        );
+        return singleFlight(request, () -> parseReleaseInfo(MAPPER.readTree(listFeatureReleases(request, 0, 1)).get(0)));
     }
 
     public ReleaseInfo getJavaReleaseInfo(String javaReleaseName, String arch, String os, ImageType jre) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
-        final String releaseInfo = getReleaseInformation(new ReleaseInfoRequest(
+        final ReleaseInfoRequest request = new ReleaseInfoRequest(
                 javaReleaseName,
                 arch,
                 jre,
                 Model.JvmImpl.HOTSPOT,
                 os,
                 Model.Vendor.ADOPT_OPENJDK
+        );
+        return singleFlight(request, () -> parseReleaseInfo(MAPPER.readTree(getReleaseInformation(request))));
+    }
+
+    private ReleaseInfo singleFlight(Object request, Callable<ReleaseInfo> call) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        try {
+            return releaseInfoRequests.execute(request, call);
+        } catch (IOException | InterruptedException | URISyntaxException | HttpStatusException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the binaries of every platform and image type of the latest release having binaries for all the given platforms,
+     * with a single request when the latest release has them all. Binaries of a new release are not published for every platform at once,
+     * older releases are then looked up one by one, up to {@value #MAX_RELEASES_SEARCHED}.
+     *
+     * @return the latest release having binaries for all the platforms, else the latest release
+     */
+    public ReleaseBinaries getLatestReleaseBinaries(int javaVersion, Collection<Platform> platforms) throws IOException, HttpStatusException {
+        final ListReleasesRequest request = new ListReleasesRequest(
+                javaVersion,
+                Model.ReleaseType.GENERAL_AVAILABILITY,
+                null,
+                null,
+                Model.JvmImpl.HOTSPOT,
+                null,
+                Model.Vendor.ADOPT_OPENJDK
+        );
+
+        ReleaseBinaries latest = null;
+        for (int page = 0; page < MAX_RELEASES_SEARCHED; page++) {
+            final JsonNode releases;
+            try {
+                releases = MAPPER.readTree(listFeatureReleases(request, page, 1));
+            } catch (HttpStatusException e) {
+                if (e.getStatusCode() == 404 && latest != null) {
+                    break; // no older release
+                }
+                throw e;
+            }
+            if (releases.size() == 0) {
+                break;
+            }
+            final ReleaseBinaries release = parseReleaseBinaries(releases.get(0));
+            if (release.getBinaries().keySet().containsAll(platforms)) {
+                return release;
+            }
+            log.info("Java release {} has no binaries yet for some of {}, looking for an older release", release.getReleaseName(), platforms);
+            if (latest == null) {
+                latest = release;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Gets the binaries of every platform and image type of a release, with a single request.
+     */
+    public ReleaseBinaries getReleaseBinaries(String javaReleaseName) throws IOException, HttpStatusException {
+        final String releaseInfo = getReleaseInformation(new ReleaseInfoRequest(
+                javaReleaseName,
+                null,
+                null,
+                Model.JvmImpl.HOTSPOT,
+                null,
+                Model.Vendor.ADOPT_OPENJDK
         ));
 
-        return parseReleaseInfo(MAPPER.readTree(releaseInfo));
+        return parseReleaseBinaries(MAPPER.readTree(releaseInfo));
     }
 
     public List<String> listAllReleases(ReleaseNamesRequest req) throws IOException, HttpStatusException {
@@ -84,7 +163,11 @@ public class AdoptOpenJdkApi {
     }
 
     private static ReleaseInfo parseReleaseInfo(JsonNode release) {
-        final JsonNode packageInfo = release.path("binaries").get(0).path("package");
+        return parseReleaseInfo(release, release.path("binaries").get(0));
+    }
+
+    private static ReleaseInfo parseReleaseInfo(JsonNode release, JsonNode binary) {
+        final JsonNode packageInfo = binary.path("package");
         final String checksum = packageInfo.path("checksum").textValue();
         final String packageName = packageInfo.path("name").textValue();
         final long size = packageInfo.path("size").longValue();
@@ -94,6 +177,32 @@ public class AdoptOpenJdkApi {
         return new ReleaseInfo(checksum, packageName, link, releaseName, size, timestamp);
     }
 
+    private static ReleaseBinaries parseReleaseBinaries(JsonNode release) {
+        final Map<Platform, ReleaseInfo> binaries = new LinkedHashMap<>();
+        for (JsonNode binary : release.path("binaries")) {
+            final String heapSize = binary.path("heap_size").asText("normal");
+            if (!Model.JvmImpl.HOTSPOT.getValue().equals(binary.path("jvm_impl").textValue()) || !"normal".equals(heapSize)) {
+                continue;
+            }
+            final ImageType imageType = parseImageType(binary.path("image_type").textValue());
+            if (imageType == null || binary.path("package").isMissingNode()) {
+                continue;
+            }
+            final Platform platform = new Platform(binary.path("os").textValue(), binary.path("architecture").textValue(), imageType);
+            binaries.putIfAbsent(platform, parseReleaseInfo(release, binary));
+        }
+        return new ReleaseBinaries(release.path("release_name").textValue(), release.path("timestamp").textValue(), binaries);
+    }
+
+    private static ImageType parseImageType(String value) {
+        for (ImageType imageType : ImageType.values()) {
+            if (imageType.getValue().equals(value)) {
+                return imageType;
+            }
+        }
+        return null;
+    }
+
     public String listReleaseNames(ReleaseNamesRequest req, int page, int pageSize) throws IOException, HttpStatusException {
 
         final Map<String, String> queryParams = new HashMap<>();
@@ -121,9 +230,9 @@ public class AdoptOpenJdkApi {
         final Map<String, String> queryParams = new HashMap<>();
         queryParams.put("project", "jdk");
         queryParams.put("jvm_impl", req.getJvmImpl().getValue());
-        queryParams.put("image_type", req.getImageType().getValue());
-        queryParams.put("architecture", req.getArchitecture());
-        queryParams.put("os", req.getOs());
+        putIfNotNull(queryParams, "image_type", req.getImageType() == null ? null : req.getImageType().getValue());
+        putIfNotNull(queryParams, "architecture", req.getArchitecture());
+        putIfNotNull(queryParams, "os", req.getOs());
 
         final ResponseBody body = httpRequester.httpGet(
                 String.format("https://api.adoptopenjdk.net/v3/assets/release_name/%s/%s",
@@ -143,10 +252,10 @@ public class AdoptOpenJdkApi {
         queryParams.put("page", String.valueOf(page));
         queryParams.put("page_size", String.valueOf(pageSize));
         queryParams.put("jvm_impl", req.getJvmImpl().getValue());
-        queryParams.put("image_type", req.getImageType().getValue());
+        putIfNotNull(queryParams, "image_type", req.getImageType() == null ? null : req.getImageType().getValue());
         queryParams.put("vendor", req.getVendor().getValue());
-        queryParams.put("architecture", req.getArchitecture());
-        queryParams.put("os", req.getOs());
+        putIfNotNull(queryParams, "architecture", req.getArchitecture());
+        putIfNotNull(queryParams, "os", req.getOs());
 
         final ResponseBody body = httpRequester.httpGet(
                 String.format("https://api.adoptopenjdk.net/v3/assets/feature_releases/%s/%s",
@@ -156,4 +265,10 @@ public class AdoptOpenJdkApi {
 
         return Objects.requireNonNull(body).string();
     }
+
+    private static void putIfNotNull(Map<String, String> queryParams, String key, String value) {
+        if (value != null) {
+            queryParams.put(key, value);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package io.github.terjouxanthony.adopt.openjdk.downloader;
 
 import net.lingala.zip4j.ZipFile;
 import net.lingala.zip4j.exception.ZipException;
+import net.lingala.zip4j.model.FileHeader;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
@@ -16,10 +17,56 @@ import java.nio.file.StandardCopyOption;
 public class ArchiveUnpacker {
 
     public void unZip(Path source, Path target) throws ZipException {
-        new ZipFile(toAbsolutePath(source)).extractAll(toAbsolutePath(target));
+        unZip(source, target, ExtractionFilter.NONE);
+    }
+
+    /**
+     * Excluded entries are not inflated at all.
+     */
+    public void unZip(Path source, Path target, ExtractionFilter filter) throws ZipException {
+        unZipEntries(source, target, filter);
+    }
+
+    /**
+     * zip4j doesn't report the files it writes, they are flushed once all extracted.
+     */
+    public void unZip(Path source, Path target, ExtractionFilter filter, FileSyncer fileSyncer) throws IOException {
+        unZipEntries(source, target, filter);
+        fileSyncer.writtenTree(target);
+    }
+
+    private static void unZipEntries(Path source, Path target, ExtractionFilter filter) throws ZipException {
+        final ZipFile zipFile = new ZipFile(toAbsolutePath(source));
+        if (filter.isEmpty()) {
+            zipFile.extractAll(toAbsolutePath(target));
+            return;
+        }
+        for (FileHeader fileHeader : zipFile.getFileHeaders()) {
+            if (filter.accept(fileHeader.getFileName())) {
+                zipFile.extractFile(fileHeader, toAbsolutePath(target));
+            }
+        }
     }
 
     public void unTarGz(Path source, Path target) throws IOException {
+        unTarGz(source, target, ExtractionFilter.NONE);
+    }
+
+    public void unTarGz(Path source, Path target, ExtractionFilter filter) throws IOException {
+        unTarGz(source, target, filter, FileSyncer.none());
+    }
+
+    public void unTarGz(Path source, Path target, ExtractionFilter filter, FileSyncer fileSyncer) throws IOException {
+        unTarGz(source, target, filter, fileSyncer, false);
+    }
+
+    /**
+     * Excluded entries are skipped without being written.
+     *
+     * @param preserveMetadata recreates symbolic and hard links as links and applies the POSIX permissions of the entries,
+     *                         otherwise every entry is extracted as a regular file with default permissions
+     */
+    public void unTarGz(Path source, Path target, ExtractionFilter filter, FileSyncer fileSyncer, boolean preserveMetadata) throws IOException {
 
         if (Files.notExists(source)) {
             throw new IOException("File doesn't exists!");
@@ -29,24 +76,51 @@ public class ArchiveUnpacker {
              BufferedInputStream bi = new BufferedInputStream(fi);
              GzipCompressorInputStream gzi = new GzipCompressorInputStream(bi);
              TarArchiveInputStream ti = new TarArchiveInputStream(gzi)) {
+            if (preserveMetadata) {
+                new MetadataPreservingTarExtractor(target, filter, fileSyncer).extract(ti);
+            } else {
+                extractTarEntries(ti, target, filter, fileSyncer);
+            }
+        }
+    }
+
+    /**
+     * Extracts an uncompressed .tar archive, eg. a bundle of release archives.
+     */
+    public void unTar(Path source, Path target) throws IOException {
+
+        if (Files.notExists(source)) {
+            throw new IOException("File doesn't exists!");
+        }
 
-            ArchiveEntry entry;
-            while ((entry = ti.getNextEntry()) != null) {
-                // create a new path, zip slip validate
-                Path newPath = zipSlipProtect(entry, target);
-                if (entry.isDirectory()) {
-                    Files.createDirectories(newPath);
-                } else {
-                    // check parent folder again
-                    Path parent = newPath.getParent();
-                    if (parent != null) {
-                        if (Files.notExists(parent)) {
-                            Files.createDirectories(parent);
-                        }
+        try (InputStream fi = Files.newInputStream(source);
+             BufferedInputStream bi = new BufferedInputStream(fi);
+             TarArchiveInputStream ti = new TarArchiveInputStream(bi)) {
+            extractTarEntries(ti, target, ExtractionFilter.NONE, FileSyncer.none());
+        }
+    }
+
+    private static void extractTarEntries(TarArchiveInputStream ti, Path target, ExtractionFilter filter, FileSyncer fileSyncer) throws IOException {
+        ArchiveEntry entry;
+        while ((entry = ti.getNextEntry()) != null) {
+            if (!filter.accept(entry.getName())) {
+                continue;
+            }
+            // create a new path, zip slip validate
+            Path newPath = zipSlipProtect(entry, target);
+            if (entry.isDirectory()) {
+                Files.createDirectories(newPath);
+            } else {
+                // check parent folder again
+                Path parent = newPath.getParent();
+                if (parent != null) {
+                    if (Files.notExists(parent)) {
+                        Files.createDirectories(parent);
                     }
-                    // copy TarArchiveInputStream to Path newPath
-                    Files.copy(ti, newPath, StandardCopyOption.REPLACE_EXISTING);
                 }
+                // copy TarArchiveInputStream to Path newPath
+                Files.copy(ti, newPath, StandardCopyOption.REPLACE_EXISTING);
+                fileSyncer.written(newPath);
             }
         }
     }
@@ -0,0 +1,44 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for tasks spending most of their time blocked on the network or the disk: downloads, installs, copies.
+ * <p>
+ * This is the Java 8 variant, made of platform threads. The jar is multi-release, on Java 21+ the variant in
+ * src/main/java21 runs the same tasks on virtual threads, so many concurrent installs don't hold as many OS threads.
+ */
+public final class BlockingIoExecutors {
+
+    private BlockingIoExecutors() {
+    }
+
+    /**
+     * @param maxConcurrency at most this many tasks run at the same time, the others are queued
+     */
+    public static ExecutorService newExecutor(String name, int maxConcurrency) {
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Math.max(1, maxConcurrency), threadFactory);
+    }
+
+    /**
+     * @return a daemon thread, not started
+     */
+    public static Thread newThread(String name, Runnable task) {
+        final Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public static boolean usesVirtualThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of recycled direct buffers. Buffers are allocated lazily, up to the pool capacity,
+ * after which {@link #acquire()} blocks until a buffer is released.
+ * <p>
+ * The occupancy getters tell which side of a pipeline is the bottleneck: a pool which is often exhausted
+ * means the consumer (eg. the disk) is slower than the producer (eg. the network).
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final int capacity;
+    private final BlockingQueue<ByteBuffer> freeBuffers = new LinkedBlockingQueue<>();
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger maxInUse = new AtomicInteger();
+    private final AtomicLong exhaustedWaitNanos = new AtomicLong();
+
+    public BufferPool(int bufferSize, int capacity) {
+        if (bufferSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Buffer size and pool capacity must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+    }
+
+    public ByteBuffer acquire() throws InterruptedException {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            buffer = tryAllocate();
+        }
+        if (buffer == null) {
+            final long start = System.nanoTime();
+            buffer = freeBuffers.take();
+            exhaustedWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+        final int nowInUse = inUse.incrementAndGet();
+        maxInUse.accumulateAndGet(nowInUse, Math::max);
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        inUse.decrementAndGet();
+        freeBuffers.add(buffer);
+    }
+
+    private ByteBuffer tryAllocate() {
+        while (true) {
+            final int current = allocated.get();
+            if (current >= capacity) {
+                return null;
+            }
+            if (allocated.compareAndSet(current, current + 1)) {
+                return ByteBuffer.allocateDirect(bufferSize);
+            }
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of buffers currently held by producers or consumers.
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * @return highest number of buffers held at the same time since the pool creation.
+     */
+    public int getMaxInUse() {
+        return maxInUse.get();
+    }
+
+    /**
+     * @return total time spent by producers waiting for a free buffer, ie. backpressure time.
+     */
+    public long getExhaustedWaitNanos() {
+        return exhaustedWaitNanos.get();
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Class data sharing archives of an install, made with its own java binary right after extraction.
+ * <p>
+ * The default archive (classes.jsa) is loaded by every JVM started from the install, it is only dumped when the vendor build doesn't ship one.
+ * An AppCDS archive can also be dumped from a class list, it is used with -XX:SharedArchiveFile.
+ */
+@Slf4j
+public class CdsArchiveGenerator {
+    static final String DEFAULT_ARCHIVE_NAME = "classes.jsa";
+    static final String APP_ARCHIVE_NAME = "app-cds.jsa";
+
+    /* lib/server/classes.jsa from JDK 9, jre/lib/amd64/server/classes.jsa for a JDK 8 */
+    private static final int MAX_DEFAULT_ARCHIVE_DEPTH = 5;
+
+    /**
+     * @param classList optional class list, eg. written by -XX:DumpLoadedClassList
+     * @return the archives of the install, relative to the install folder
+     */
+    public List<String> generate(Path installFolder, Path javaHome, String os, Path classList) throws IOException, InterruptedException {
+        final Path javaBinary = javaHome.resolve("bin").resolve(os.equals("windows") ? "java.exe" : "java");
+        if (!Files.isExecutable(javaBinary) && !javaBinary.toFile().setExecutable(true)) {
+            throw new IOException("Impossible to make " + javaBinary + " executable");
+        }
+
+        final long start = System.nanoTime();
+        final List<String> archives = new ArrayList<>();
+        Optional<Path> defaultArchive = findDefaultArchive(javaHome);
+        if (!defaultArchive.isPresent()) {
+            log.info("Dumping default CDS archive of {} ...", javaHome);
+            Utils.runTool(Arrays.asList(javaBinary.toString(), "-Xshare:dump"));
+            defaultArchive = findDefaultArchive(javaHome);
+            if (!defaultArchive.isPresent()) {
+                throw new IOException("No " + DEFAULT_ARCHIVE_NAME + " found in " + javaHome + " after -Xshare:dump");
+            }
+        }
+        archives.add(relativeName(installFolder, defaultArchive.get()));
+
+        if (classList != null) {
+            final Path appArchive = javaHome.resolve("lib").resolve(APP_ARCHIVE_NAME);
+            log.info("Dumping AppCDS archive of {} from class list {} ...", javaHome, classList);
+            Utils.runTool(Arrays.asList(javaBinary.toString(), "-Xshare:dump",
+                    "-XX:SharedClassListFile=" + classList.toAbsolutePath(),
+                    "-XX:SharedArchiveFile=" + appArchive));
+            archives.add(relativeName(installFolder, appArchive));
+        }
+        log.info("CDS archives {} ready in {} ms", archives, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return archives;
+    }
+
+    /**
+     * @return true if every archive is still there, a JVM silently runs without a missing or truncated archive
+     */
+    public boolean exist(Path installFolder, List<String> archives) throws IOException {
+        for (String archive : archives) {
+            final Path path = installFolder.resolve(archive);
+            if (!Files.isRegularFile(path) || Files.size(path) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Optional<Path> findDefaultArchive(Path javaHome) throws IOException {
+        try (Stream<Path> walk = Files.walk(javaHome, MAX_DEFAULT_ARCHIVE_DEPTH)) {
+            return walk.filter(path -> path.getFileName().toString().equals(DEFAULT_ARCHIVE_NAME))
+                    .filter(Files::isRegularFile)
+                    .findFirst();
+        }
+    }
+
+    private static String relativeName(Path installFolder, Path path) {
+        return installFolder.relativize(path).toString().replace('\\', '/');
+    }
+}
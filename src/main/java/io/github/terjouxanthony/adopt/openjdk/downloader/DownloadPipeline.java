@@ -0,0 +1,154 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * Two stage download: a network reader thread fills buffers taken from a bounded {@link BufferPool},
+ * and the calling thread drains them to disk. The reader only blocks when the pool is exhausted,
+ * so a disk stall doesn't immediately stop reading the socket.
+ */
+@Slf4j
+public class DownloadPipeline {
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_NB_BUFFERS = 16;
+
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    @Getter
+    private final BufferPool bufferPool;
+
+    public DownloadPipeline() {
+        this(new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_NB_BUFFERS));
+    }
+
+    public DownloadPipeline(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    public TransferStats transfer(ReadableByteChannel in, FileChannel out, LongConsumer nbBytesWrittenConsumer) throws IOException {
+        final BlockingQueue<ByteBuffer> filledBuffers = new LinkedBlockingQueue<>();
+        final AtomicReference<Throwable> readerError = new AtomicReference<>();
+        final long poolWaitBefore = bufferPool.getExhaustedWaitNanos();
+
+        final Thread reader = BlockingIoExecutors.newThread("java-downloader-network-reader", () -> {
+            try {
+                boolean endOfStream = false;
+                while (!endOfStream) {
+                    final ByteBuffer buffer = bufferPool.acquire();
+                    try {
+                        endOfStream = Utils.fill(in, buffer);
+                    } catch (Throwable e) {
+                        bufferPool.release(buffer);
+                        throw e;
+                    }
+                    buffer.flip();
+                    if (buffer.hasRemaining()) {
+                        filledBuffers.add(buffer);
+                    } else {
+                        bufferPool.release(buffer);
+                    }
+                }
+            } catch (Throwable e) {
+                readerError.set(e);
+            } finally {
+                filledBuffers.add(END_OF_STREAM);
+            }
+        });
+        reader.start();
+
+        long transferred = 0;
+        long writerWaitNanos = 0;
+        try {
+            while (true) {
+                final long start = System.nanoTime();
+                final ByteBuffer buffer = filledBuffers.take();
+                writerWaitNanos += System.nanoTime() - start;
+                if (buffer == END_OF_STREAM) {
+                    break;
+                }
+                try {
+                    final int size = buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    transferred += size;
+                    nbBytesWrittenConsumer.accept(size);
+                } finally {
+                    bufferPool.release(buffer);
+                }
+            }
+        } catch (InterruptedException e) {
+            stopReader(reader, in, filledBuffers);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing download");
+        } catch (IOException | RuntimeException e) {
+            stopReader(reader, in, filledBuffers);
+            throw e;
+        }
+
+        final Throwable error = readerError.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error != null) {
+            throw new IOException("Failed to read download", error);
+        }
+
+        final TransferStats stats = new TransferStats(
+                transferred,
+                bufferPool.getExhaustedWaitNanos() - poolWaitBefore,
+                writerWaitNanos);
+        log.debug("Download pipeline stats: {}, pool max in use {}/{}", stats, bufferPool.getMaxInUse(), bufferPool.getCapacity());
+        return stats;
+    }
+
+    /**
+     * Gives back to the pool the buffers filled but not written after a write failure.
+     * The reader may be blocked reading the socket, closing the source unblocks it.
+     */
+    private void stopReader(Thread reader, ReadableByteChannel in, BlockingQueue<ByteBuffer> filledBuffers) {
+        reader.interrupt();
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Failed to close download source: {}", e.toString());
+        }
+        boolean interrupted = false;
+        while (reader.isAlive()) {
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        ByteBuffer buffer;
+        while ((buffer = filledBuffers.poll()) != null) {
+            if (buffer != END_OF_STREAM) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    @Data
+    public static class TransferStats {
+        private final long transferredBytes;
+        /* Time the network reader waited for a free buffer: the disk is the bottleneck */
+        private final long readerBlockedNanos;
+        /* Time the disk writer waited for data: the network is the bottleneck */
+        private final long writerIdleNanos;
+    }
+}
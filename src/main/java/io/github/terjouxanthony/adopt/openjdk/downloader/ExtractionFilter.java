@@ -0,0 +1,169 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Include/exclude filters applied on archive entries during extraction.
+ * <p>
+ * Patterns are globs relative to the java home folder, '/' separated, eg. "lib/src.zip", "jmods", "demo", "man/**".
+ * '*' matches within a path segment and '**' across segments. A pattern matching a folder also matches everything under it.
+ * An entry is extracted if it matches no exclude pattern and, when include patterns are given, at least one of them.
+ * Filters removing bin/java are refused: installs made with them would never be found valid, and downloaded again on each call.
+ */
+@Getter
+@EqualsAndHashCode(of = {"includes", "excludes"})
+public class ExtractionFilter {
+    public static final ExtractionFilter NONE = new ExtractionFilter(Collections.emptyList(), Collections.emptyList());
+
+    private static final String MAC_HOME_PREFIX = "Contents/Home/";
+    private static final String[] JAVA_EXECUTABLES = {"jdk/bin/java", "jdk/bin/java.exe"};
+
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final List<Pattern> includePatterns;
+    private final List<Pattern> excludePatterns;
+
+    private ExtractionFilter(List<String> includes, List<String> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.includePatterns = includes.stream().map(ExtractionFilter::globToRegex).collect(Collectors.toList());
+        this.excludePatterns = excludes.stream().map(ExtractionFilter::globToRegex).collect(Collectors.toList());
+    }
+
+    public static ExtractionFilter of(List<String> includes, List<String> excludes) {
+        final List<String> sortedIncludes = normalize(includes);
+        final List<String> sortedExcludes = normalize(excludes);
+        if (sortedIncludes.isEmpty() && sortedExcludes.isEmpty()) {
+            return NONE;
+        }
+        final ExtractionFilter filter = new ExtractionFilter(sortedIncludes, sortedExcludes);
+        for (String javaExecutable : JAVA_EXECUTABLES) {
+            if (!filter.accept(javaExecutable)) {
+                throw new IllegalArgumentException(filter + " removes " + javaExecutable.substring(javaExecutable.indexOf('/') + 1)
+                        + ", which every install needs");
+            }
+        }
+        return filter;
+    }
+
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * @param entryName archive entry name, its first segment is the top folder of the archive, eg. "jdk-16.0.1+9-jre/lib/src.zip"
+     */
+    public boolean accept(String entryName) {
+        if (isEmpty()) {
+            return true;
+        }
+        final String relativePath = pathInJavaHome(entryName);
+        if (relativePath.isEmpty()) {
+            return true;
+        }
+        final List<String> candidates = pathAndAncestors(relativePath);
+        if (matchesAny(excludePatterns, candidates)) {
+            return false;
+        }
+        return includePatterns.isEmpty() || matchesAny(includePatterns, candidates);
+    }
+
+    /**
+     * @return a short stable identifier of this filter, empty for {@link #NONE}.
+     */
+    public String fingerprint() {
+        if (isEmpty()) {
+            return "";
+        }
+        // patterns are prefixed with their length: globs may contain any separator, eg. ','
+        final StringBuilder key = new StringBuilder("include:");
+        includes.forEach(include -> key.append(include.length()).append(':').append(include));
+        key.append(";exclude:");
+        excludes.forEach(exclude -> key.append(exclude.length()).append(':').append(exclude));
+        return DigestUtils.sha256Hex(key.toString()).substring(0, 12);
+    }
+
+    private static String pathInJavaHome(String entryName) {
+        String path = entryName.replace('\\', '/');
+        while (path.startsWith("/") || path.startsWith("./")) {
+            path = path.substring(path.indexOf('/') + 1);
+        }
+        final int firstSeparator = path.indexOf('/');
+        path = firstSeparator < 0 ? "" : path.substring(firstSeparator + 1);
+        if (path.startsWith(MAC_HOME_PREFIX)) {
+            path = path.substring(MAC_HOME_PREFIX.length());
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    private static List<String> pathAndAncestors(String path) {
+        final List<String> candidates = new ArrayList<>();
+        int index = path.indexOf('/');
+        while (index >= 0) {
+            candidates.add(path.substring(0, index));
+            index = path.indexOf('/', index + 1);
+        }
+        candidates.add(path);
+        return candidates;
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, List<String> candidates) {
+        for (Pattern pattern : patterns) {
+            for (String candidate : candidates) {
+                if (pattern.matcher(candidate).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<String> normalize(List<String> patterns) {
+        if (patterns == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(patterns.stream()
+                .map(pattern -> pattern.trim().replace('\\', '/'))
+                .map(pattern -> pattern.startsWith("/") ? pattern.substring(1) : pattern)
+                .map(pattern -> pattern.endsWith("/") ? pattern.substring(0, pattern.length() - 1) : pattern)
+                .filter(pattern -> !pattern.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new)));
+    }
+
+    private static Pattern globToRegex(String glob) {
+        final StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractionFilter(includes=" + includes + ", excludes=" + excludes + ")";
+    }
+}
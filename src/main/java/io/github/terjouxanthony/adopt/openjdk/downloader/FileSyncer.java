@@ -0,0 +1,167 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.Durability;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Flushes the files of a work folder to the disk according to a {@link Durability}, before the folder is promoted by a rename.
+ * <p>
+ * Extractors report each file once written, then {@link #commit(Path)} waits for the pending flushes and flushes the directories of the tree,
+ * so that the rename never exposes entries still only in the page cache.
+ * One syncer per work folder, not thread safe.
+ */
+@Slf4j
+public class FileSyncer implements Closeable {
+    public static final int BATCH_SIZE = 128;
+
+    /* Windows only flushes files opened for writing, POSIX systems flush read-only files too (eg. mode 0444 after extraction) */
+    private static final StandardOpenOption FLUSH_OPEN_OPTION = System.getProperty("os.name").toLowerCase().startsWith("windows")
+            ? StandardOpenOption.WRITE
+            : StandardOpenOption.READ;
+
+    private final Durability durability;
+    private List<Path> batch = new ArrayList<>();
+    private final List<Future<?>> pendingBatches = new ArrayList<>();
+    private ExecutorService executor; // batched mode only, created on the first batch
+
+    public FileSyncer(Durability durability) {
+        this.durability = durability;
+    }
+
+    public static FileSyncer none() {
+        return new FileSyncer(Durability.NONE);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void written(Path file) throws IOException {
+        switch (durability) {
+            case NONE:
+                return;
+            case STRICT:
+                force(file);
+                return;
+            case BATCHED:
+                batch.add(file);
+                if (batch.size() >= BATCH_SIZE) {
+                    submitBatch();
+                }
+        }
+    }
+
+    /**
+     * For extractors that don't report their files, eg. zip4j.
+     */
+    public void writtenTree(Path folder) throws IOException {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        for (Path file : listTree(folder, false)) {
+            written(file);
+        }
+    }
+
+    /**
+     * Waits for the flushes of every reported file, then flushes every directory of the tree.
+     */
+    public void commit(Path folder) throws IOException {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        final long start = System.nanoTime();
+        if (!batch.isEmpty()) {
+            submitBatch();
+        }
+        try {
+            for (Future<?> pendingBatch : pendingBatches) {
+                pendingBatch.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing " + folder);
+        } finally {
+            pendingBatches.clear();
+        }
+        for (Path directory : listTree(folder, true)) {
+            forceDirectory(directory);
+        }
+        log.debug("Flushed {} in {} mode in {} ms", folder, durability, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Flushes the entry of a renamed folder in its parent.
+     */
+    public void committed(Path folder) {
+        if (durability != Durability.NONE && folder.toAbsolutePath().getParent() != null) {
+            forceDirectory(folder.toAbsolutePath().getParent());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitBatch() {
+        if (executor == null) {
+            executor = BlockingIoExecutors.newExecutor("java-downloader-fsync", 1);
+        }
+        final List<Path> files = batch;
+        batch = new ArrayList<>();
+        pendingBatches.add(executor.submit(() -> {
+            for (Path file : files) {
+                force(file);
+            }
+            return null;
+        }));
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, FLUSH_OPEN_OPTION)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Directories can't be flushed on every OS, eg. Windows refuses to open them: their entries are then as durable as the OS makes them.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Impossible to flush directory {}: {}", directory, e.toString());
+        }
+    }
+
+    private static List<Path> listTree(Path folder, boolean directories) throws IOException {
+        try (Stream<Path> walk = Files.walk(folder)) {
+            return walk.filter(path -> directories ? Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) : Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .collect(Collectors.toList());
+        }
+    }
+}
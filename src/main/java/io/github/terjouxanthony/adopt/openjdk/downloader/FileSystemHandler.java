@@ -4,13 +4,22 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,6 +30,13 @@ public class FileSystemHandler {
         Files.move(source, target);
     }
 
+    /**
+     * Renames a file or a whole folder in one step, source and target must be on the same file store.
+     */
+    public void moveAtomically(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     /**
      * !Warning! enclose the return Stream in a try-with-resources to close the associated operating system resources.
      *
@@ -35,6 +51,10 @@ public class FileSystemHandler {
         return Files.newOutputStream(path);
     }
 
+    public FileChannel writeChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
     public InputStream inputStream(Path path) throws IOException {
         return Files.newInputStream(path);
     }
@@ -53,6 +73,60 @@ public class FileSystemHandler {
         }
     }
 
+    /**
+     * Recreates the source tree at the target, which must not exist. Regular files are hard-linked when both are on the same file store,
+     * else copied with their attributes by a pool of threads. Symbolic links are recreated as they are.
+     */
+    public void linkOrCopyTree(Path source, Path target, int parallelism) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                final Path targetPath = target.resolve(source.relativize(path).toString());
+                if (Files.isSymbolicLink(path)) {
+                    Files.createSymbolicLink(targetPath, Files.readSymbolicLink(path));
+                } else if (Files.isDirectory(path)) {
+                    Files.createDirectories(targetPath);
+                } else {
+                    files.add(path);
+                }
+            }
+        }
+
+        final boolean hardLinks = Files.getFileStore(source).equals(Files.getFileStore(target));
+        final ExecutorService executor = BlockingIoExecutors.newExecutor("java-downloader-copy", Math.min(parallelism, files.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (Path file : files) {
+                final Path targetFile = target.resolve(source.relativize(file).toString());
+                futures.add(executor.submit(() -> {
+                    if (hardLinks) {
+                        try {
+                            Files.createLink(targetFile, file);
+                            return null;
+                        } catch (IOException | UnsupportedOperationException e) {
+                            log.debug("Impossible to hard-link {}, copying it: {}", file, e.toString());
+                        }
+                    }
+                    Files.copy(file, targetFile, StandardCopyOption.COPY_ATTRIBUTES);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while copying " + source);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     public void deleteFile(Path path) {
         try {
             Files.delete(path);
@@ -72,10 +146,15 @@ public class FileSystemHandler {
 
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if (!file.toFile().setWritable(true)) {
-                        throw new IOException("Impossible to set writable file " + file);
+                    try {
+                        Files.delete(file);
+                    } catch (AccessDeniedException e) {
+                        // read-only files can't be deleted on Windows
+                        if (!file.toFile().setWritable(true)) {
+                            throw new IOException("Impossible to set writable file " + file);
+                        }
+                        Files.delete(file);
                     }
-                    Files.delete(file);
                     return FileVisitResult.CONTINUE;
                 }
             });
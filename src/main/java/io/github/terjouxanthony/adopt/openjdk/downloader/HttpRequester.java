@@ -17,13 +17,20 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class HttpRequester {
 
-    private OkHttpClient httpClient;
+    private volatile OkHttpClient httpClient; // created on first request, installs found locally never pay for it
 
-    public HttpRequester() {
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(5, TimeUnit.SECONDS)
-                .readTimeout(1, TimeUnit.MINUTES)
-                .build();
+    private OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            synchronized (this) {
+                if (httpClient == null) {
+                    httpClient = new OkHttpClient.Builder()
+                            .connectTimeout(5, TimeUnit.SECONDS)
+                            .readTimeout(1, TimeUnit.MINUTES)
+                            .build();
+                }
+            }
+        }
+        return httpClient;
     }
 
     public Response httpGet(String path,
@@ -40,7 +47,7 @@ public class HttpRequester {
                 .headers(headers)
                 .build();
 
-        Call call = httpClient.newCall(request);
+        Call call = getHttpClient().newCall(request);
 
         final long start = System.nanoTime();
         Response response = call.execute();
@@ -0,0 +1,310 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester.HttpStatusException;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.Durability;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import static io.github.terjouxanthony.adopt.openjdk.downloader.Utils.MAPPER;
+
+/**
+ * Local HTTP server sharing one {@link JavaDownloader} between the build agents of a host: they share its release metadata,
+ * its downloads and its coalescing of identical installs, instead of each JVM resolving and downloading on its own.
+ * <p>
+ * It only listens on the loopback interface, only answers requests addressed to a loopback host name, and always installs in its own javaDownloaderDir.
+ * It never reads nor writes paths chosen by a client: lock files, CDS class lists and shared cache folders are refused.
+ * <pre>
+ * POST /install   body {"os": "linux", "arch": "x64", "javaVersion": 16 | "fullJavaReleaseName": "jdk-16.0.1+9", "imageType": "jre", ...}
+ * GET  /resolve?range=[11,12)
+ * GET  /list
+ * </pre>
+ * Errors are answered with a status code and a body {"error": message, "type": exception class}, see {@link InstallDaemonClient}.
+ */
+@Slf4j
+public class InstallDaemon implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+
+    /* one per build executor, installs block while downloading. Virtual threads (Java 21+) don't hold OS threads while blocked */
+    private static final int MAX_CONCURRENT_REQUESTS = BlockingIoExecutors.usesVirtualThreads() ? 256 : 16;
+
+    /* params of the body left out take the defaults of the builder */
+    private static final InstallJavaParams DEFAULT_PARAMS = InstallJavaParams.builder().os("").arch("").build();
+    /* a web page can reach the loopback interface through a host name of its own resolving to it, eg. DNS rebinding */
+    private static final Set<String> LOOPBACK_HOSTS = new HashSet<>(Arrays.asList("localhost", "127.0.0.1", "[::1]"));
+    private static final Set<String> CLIENT_PATH_PARAMS = new HashSet<>(Arrays.asList("lockFile", "cdsClassList", "sharedCacheDirs", "javaDownloaderDir"));
+
+    private final JavaDownloader javaDownloader;
+    private final Path javaDownloaderDir;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private InstallDaemon(JavaDownloader javaDownloader, Path javaDownloaderDir, HttpServer server, ExecutorService executor) {
+        this.javaDownloader = javaDownloader;
+        this.javaDownloaderDir = javaDownloaderDir;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * @param port 0 picks a free port, see {@link #getPort()}
+     */
+    public static InstallDaemon start(JavaDownloader javaDownloader, Path javaDownloaderDir, int port) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        final ExecutorService executor = BlockingIoExecutors.newExecutor("java-downloader-daemon", MAX_CONCURRENT_REQUESTS);
+        final InstallDaemon daemon = new InstallDaemon(javaDownloader, javaDownloaderDir, server, executor);
+        server.createContext("/install", exchange -> daemon.handle(exchange, "POST", daemon::install));
+        server.createContext("/resolve", exchange -> daemon.handle(exchange, "GET", daemon::resolve));
+        server.createContext("/list", exchange -> daemon.handle(exchange, "GET", daemon::list));
+        server.setExecutor(executor);
+        server.start();
+        log.info("Install daemon listening on {} for {}", server.getAddress(), javaDownloaderDir);
+        return daemon;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private JsonNode install(HttpExchange exchange) throws Exception {
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.toLowerCase().startsWith("application/json")) {
+            throw new UnsupportedContentTypeException("Content-Type must be application/json, not " + contentType);
+        }
+        final JsonNode body;
+        try {
+            body = MAPPER.readTree(exchange.getRequestBody());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON body: " + e.getOriginalMessage());
+        }
+        final InstallJavaParams params = parseInstallParams(body);
+        final JavaInstallDescription installation = javaDownloader.installJava(params);
+        return MAPPER.createObjectNode()
+                .put("installPath", installation.getInstallPath().toAbsolutePath().toString())
+                .put("jdkHome", installation.getJdkHomePath().toAbsolutePath().toString());
+    }
+
+    private JsonNode resolve(HttpExchange exchange) throws Exception {
+        final String range = queryParams(exchange).get("range");
+        if (range == null) {
+            throw new IllegalArgumentException("Missing query parameter range");
+        }
+        return MAPPER.createObjectNode()
+                .put("range", range)
+                .put("releaseName", javaDownloader.findLatestRelease(range).orElse(null));
+    }
+
+    private JsonNode list(HttpExchange exchange) throws IOException {
+        final ArrayNode installs = MAPPER.createArrayNode();
+        for (Path install : javaDownloader.listInstalls(javaDownloaderDir)) {
+            installs.add(install.toAbsolutePath().toString());
+        }
+        return installs;
+    }
+
+    private InstallJavaParams parseInstallParams(JsonNode body) {
+        if (body == null || !body.isObject()) {
+            throw new IllegalArgumentException("The body must be a JSON object");
+        }
+        for (String pathParam : CLIENT_PATH_PARAMS) {
+            if (body.has(pathParam)) {
+                throw new IllegalArgumentException(pathParam + " is not supported, the daemon doesn't use the paths of its clients");
+            }
+        }
+        if (!body.hasNonNull("os") || !body.hasNonNull("arch")) {
+            throw new IllegalArgumentException("os and arch are required");
+        }
+        if (!body.hasNonNull("javaVersion") && !body.hasNonNull("fullJavaReleaseName")) {
+            throw new IllegalArgumentException("Either javaVersion or fullJavaReleaseName is required");
+        }
+        final JsonNode javaVersion = body.path("javaVersion");
+        if (!javaVersion.isMissingNode() && !javaVersion.isNull() && !javaVersion.isInt()) {
+            throw new IllegalArgumentException("javaVersion must be an integer");
+        }
+        return InstallJavaParams.builder()
+                .os(text(body, "os", null))
+                .arch(text(body, "arch", null))
+                .javaVersion(javaVersion.isInt() ? javaVersion.intValue() : null)
+                .fullJavaReleaseName(text(body, "fullJavaReleaseName", null))
+                .imageType(parseImageType(text(body, "imageType", DEFAULT_PARAMS.getImageType().getValue())))
+                .downloadLatest(bool(body, "downloadLatest", DEFAULT_PARAMS.isDownloadLatest()))
+                .cleanExistingSameMajorVersion(bool(body, "cleanExistingSameMajorVersion", DEFAULT_PARAMS.isCleanExistingSameMajorVersion()))
+                .deferredCleanup(bool(body, "deferredCleanup", DEFAULT_PARAMS.isDeferredCleanup()))
+                .pipelinedDownload(bool(body, "pipelinedDownload", DEFAULT_PARAMS.isPipelinedDownload()))
+                .includePaths(texts(body, "includePaths"))
+                .excludePaths(texts(body, "excludePaths"))
+                .offline(bool(body, "offline", InstallJavaParams.isOfflineByDefault()))
+                .generateCdsArchive(bool(body, "generateCdsArchive", DEFAULT_PARAMS.isGenerateCdsArchive()))
+                .durability(parseDurability(text(body, "durability", DEFAULT_PARAMS.getDurability().name())))
+                .preserveTarMetadata(bool(body, "preserveTarMetadata", DEFAULT_PARAMS.isPreserveTarMetadata()))
+                .javaDownloaderDir(javaDownloaderDir)
+                .build();
+    }
+
+    private static String text(JsonNode body, String field, String defaultValue) {
+        final JsonNode value = body.path(field);
+        if (value.isMissingNode() || value.isNull()) {
+            return defaultValue;
+        }
+        if (!value.isTextual()) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return value.textValue();
+    }
+
+    private static boolean bool(JsonNode body, String field, boolean defaultValue) {
+        final JsonNode value = body.path(field);
+        if (value.isMissingNode() || value.isNull()) {
+            return defaultValue;
+        }
+        if (!value.isBoolean()) {
+            throw new IllegalArgumentException(field + " must be a boolean");
+        }
+        return value.booleanValue();
+    }
+
+    private static List<String> texts(JsonNode body, String field) {
+        final JsonNode values = body.path(field);
+        if (values.isMissingNode() || values.isNull()) {
+            return Collections.emptyList();
+        }
+        if (!values.isArray()) {
+            throw new IllegalArgumentException(field + " must be an array of strings");
+        }
+        final List<String> texts = new ArrayList<>();
+        for (JsonNode value : values) {
+            if (!value.isTextual()) {
+                throw new IllegalArgumentException(field + " must be an array of strings");
+            }
+            texts.add(value.textValue());
+        }
+        return texts;
+    }
+
+    private static ImageType parseImageType(String imageType) {
+        for (ImageType value : ImageType.values()) {
+            if (value.getValue().equalsIgnoreCase(imageType)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown imageType " + imageType + " , must be jre or jdk");
+    }
+
+    private static Durability parseDurability(String durability) {
+        try {
+            return Durability.valueOf(durability.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown durability " + durability + " , must be one of " + Arrays.toString(Durability.values()));
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try {
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                respond(exchange, 403, error("Host " + exchange.getRequestHeaders().getFirst("Host") + " not allowed", IllegalArgumentException.class));
+                return;
+            }
+            if (!exchange.getRequestMethod().equals(method)) {
+                respond(exchange, 405, error("Method " + exchange.getRequestMethod() + " not allowed", IllegalArgumentException.class));
+                return;
+            }
+            respond(exchange, 200, handler.handle(exchange));
+        } catch (UnsupportedContentTypeException e) {
+            respond(exchange, 415, error(e.getMessage(), IllegalArgumentException.class));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage(), e.getClass()));
+        } catch (NotAvailableLocallyException e) {
+            respond(exchange, 404, error(e.getMessage(), e.getClass()));
+        } catch (HttpStatusException e) {
+            respond(exchange, 502, error(e.getMessage(), e.getClass()));
+        } catch (Exception e) {
+            log.warn("Request {} {} failed", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            respond(exchange, 500, error(e.getMessage(), e.getClass()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @param host the Host header, with an optional port, eg. 127.0.0.1:7878
+     */
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        final int portSeparator = host.lastIndexOf(':');
+        final String hostName = portSeparator > host.lastIndexOf(']') ? host.substring(0, portSeparator) : host;
+        return LOOPBACK_HOSTS.contains(hostName.toLowerCase());
+    }
+
+    private static ObjectNode error(String message, Class<?> type) {
+        return MAPPER.createObjectNode()
+                .put("error", String.valueOf(message))
+                .put("type", type.getName());
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, JsonNode body) throws IOException {
+        final byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) throws UnsupportedEncodingException {
+        final Map<String, String> params = new HashMap<>();
+        final String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            final int equals = param.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(param.substring(0, equals), "UTF-8"), URLDecoder.decode(param.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private interface Handler {
+        JsonNode handle(HttpExchange exchange) throws Exception;
+    }
+
+    private static class UnsupportedContentTypeException extends IllegalArgumentException {
+        UnsupportedContentTypeException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester.HttpStatusException;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.terjouxanthony.adopt.openjdk.downloader.Utils.MAPPER;
+
+/**
+ * Client of a local {@link InstallDaemon}, for build agents that only need the path of a ready install.
+ * The javaDownloaderDir of the params is ignored, the daemon installs in its own.
+ * Params holding paths of the client (lock file, CDS class list, shared cache folders) are refused, the daemon doesn't use them.
+ */
+public class InstallDaemonClient {
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final HttpUrl baseUrl;
+    private final OkHttpClient httpClient;
+
+    public InstallDaemonClient(int port) {
+        this.baseUrl = new HttpUrl.Builder().scheme("http").host("127.0.0.1").port(port).build();
+        this.httpClient = new OkHttpClient.Builder()
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.MINUTES) // the daemon answers once the install is done
+                .build();
+    }
+
+    public JavaInstallDescription installJava(InstallJavaParams params) throws IOException, HttpStatusException {
+        if (params.getLockFile() != null || params.getCdsClassList() != null || !params.getSharedCacheDirs().isEmpty()) {
+            throw new IllegalArgumentException("Lock files, CDS class lists and shared cache folders are not supported by the install daemon");
+        }
+        final ObjectNode body = MAPPER.createObjectNode()
+                .put("os", params.getOs())
+                .put("arch", params.getArch())
+                .put("javaVersion", params.getJavaVersion())
+                .put("fullJavaReleaseName", params.getFullJavaReleaseName())
+                .put("imageType", params.getImageType().getValue())
+                .put("downloadLatest", params.isDownloadLatest())
+                .put("cleanExistingSameMajorVersion", params.isCleanExistingSameMajorVersion())
+                .put("deferredCleanup", params.isDeferredCleanup())
+                .put("pipelinedDownload", params.isPipelinedDownload())
+                .put("offline", params.isOffline())
+                .put("generateCdsArchive", params.isGenerateCdsArchive())
+                .put("durability", params.getDurability().name())
+                .put("preserveTarMetadata", params.isPreserveTarMetadata());
+        params.getIncludePaths().forEach(body.putArray("includePaths")::add);
+        params.getExcludePaths().forEach(body.putArray("excludePaths")::add);
+        final JsonNode installation = call(new Request.Builder()
+                .url(baseUrl.resolve("/install"))
+                .post(RequestBody.create(MAPPER.writeValueAsBytes(body), JSON))
+                .build());
+        return new JavaInstallDescription(
+                Paths.get(installation.get("installPath").textValue()),
+                Paths.get(installation.get("jdkHome").textValue()));
+    }
+
+    public Optional<String> findLatestRelease(String versionRange) throws IOException, HttpStatusException {
+        final JsonNode resolved = call(new Request.Builder()
+                .url(baseUrl.newBuilder().addPathSegment("resolve").addQueryParameter("range", versionRange).build())
+                .get()
+                .build());
+        return Optional.ofNullable(resolved.path("releaseName").textValue());
+    }
+
+    public List<Path> listInstalls() throws IOException, HttpStatusException {
+        final List<Path> installs = new ArrayList<>();
+        for (JsonNode install : call(new Request.Builder().url(baseUrl.resolve("/list")).get().build())) {
+            installs.add(Paths.get(install.textValue()));
+        }
+        return installs;
+    }
+
+    private JsonNode call(Request request) throws IOException, HttpStatusException {
+        try (Response response = httpClient.newCall(request).execute()) {
+            final String body = response.body().string();
+            if (response.isSuccessful()) {
+                return MAPPER.readTree(body);
+            }
+            final JsonNode error = readError(response.body().contentType(), body);
+            if (NotAvailableLocallyException.class.getName().equals(error.path("type").textValue())) {
+                throw new NotAvailableLocallyException(error.path("error").textValue());
+            }
+            throw new HttpStatusException(response.code(), request.url().toString(), body);
+        }
+    }
+
+    /**
+     * @return the JSON error of the daemon, or a missing node when something else answered, eg. a proxy with an HTML page
+     */
+    private static JsonNode readError(MediaType contentType, String body) {
+        if (contentType == null || !"json".equals(contentType.subtype())) {
+            return MissingNode.getInstance();
+        }
+        try {
+            return MAPPER.readTree(body);
+        } catch (JsonProcessingException e) {
+            return MissingNode.getInstance();
+        }
+    }
+}
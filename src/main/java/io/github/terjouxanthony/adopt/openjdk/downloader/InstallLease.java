@@ -0,0 +1,121 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Marks an install as in use: retention and cleanups never delete it while the lease is open.
+ * <p>
+ * A lease is a shared lock on a bookkeeping file of the install, so it is seen by every process using the same javaDownloaderDir.
+ * File locks are held by the whole JVM, leases of the same install taken in one process share the lock, released when the last lease is closed.
+ */
+public final class InstallLease implements Closeable {
+    static final String LEASE_FILE_NAME = InstallManifest.BOOKKEEPING_FILE_PREFIX + "lease";
+
+    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().startsWith("windows");
+
+    /* guarded by itself */
+    private static final Map<Path, SharedLock> LOCKS = new HashMap<>();
+
+    private final Path installFolder;
+    private boolean closed;
+
+    private InstallLease(Path installFolder) {
+        this.installFolder = installFolder;
+    }
+
+    public static InstallLease acquire(Path installFolder) throws IOException {
+        final Path key = installFolder.toAbsolutePath().normalize();
+        synchronized (LOCKS) {
+            SharedLock sharedLock = LOCKS.get(key);
+            if (sharedLock == null) {
+                final FileChannel channel = openLeaseFile(key);
+                try {
+                    channel.lock(0, Long.MAX_VALUE, true);
+                } catch (IOException | RuntimeException e) {
+                    channel.close();
+                    throw e;
+                }
+                sharedLock = new SharedLock(channel);
+                LOCKS.put(key, sharedLock);
+            }
+            sharedLock.count++;
+        }
+        return new InstallLease(key);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (LOCKS) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            final SharedLock sharedLock = LOCKS.get(installFolder);
+            if (--sharedLock.count == 0) {
+                LOCKS.remove(installFolder);
+                sharedLock.channel.close(); // releases the lock
+            }
+        }
+    }
+
+    /**
+     * Runs the action unless the install is leased by any process. Leases can't be taken in this process while the action runs.
+     * <p>
+     * On POSIX systems the exclusive lock is held until the action is done, so other processes can't lease the install meanwhile.
+     * Windows can't rename a folder holding an open file: the lock is released before the action, and a process leasing the install
+     * between the check and the action may then see it moved away.
+     *
+     * @return false if the install is leased, the action is not run
+     */
+    static boolean runIfNotLeased(Path installFolder, IoAction action) throws IOException {
+        final Path key = installFolder.toAbsolutePath().normalize();
+        synchronized (LOCKS) {
+            if (LOCKS.containsKey(key)) {
+                return false;
+            }
+            try (FileChannel channel = openLeaseFile(key)) {
+                final FileLock lock;
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    return false;
+                }
+                if (lock == null) {
+                    return false;
+                }
+                if (!IS_WINDOWS) {
+                    action.run(); // the lock is released when the channel is closed
+                    return true;
+                }
+                lock.release();
+            }
+            action.run();
+            return true;
+        }
+    }
+
+    private static FileChannel openLeaseFile(Path installFolder) throws IOException {
+        return FileChannel.open(installFolder.resolve(LEASE_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static final class SharedLock {
+        private final FileChannel channel;
+        private int count;
+
+        private SharedLock(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.VerificationMode;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.VerificationResult;
+import lombok.Data;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.terjouxanthony.adopt.openjdk.downloader.Utils.MAPPER;
+
+/**
+ * List of every regular file of an install with its size, modification time and SHA-256 hash.
+ * It is written inside the install folder at extraction time, and allows to check an install without downloading it again.
+ */
+public class InstallManifest {
+    public static final String MANIFEST_FILE_NAME = ".install-manifest.json";
+    static final String BOOKKEEPING_FILE_PREFIX = ".install-";
+
+    /* Small files are hashed through a buffer reused by each hashing thread, big ones (eg. lib/modules) are mapped window by window */
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+    private static final long MAPPED_HASH_THRESHOLD = 8L * 1024 * 1024;
+    private static final long MAPPED_HASH_WINDOW = 64L * 1024 * 1024;
+    /* A mapping is only released when garbage collected, which keeps the file locked on Windows: the install could not be deleted */
+    private static final boolean CAN_MAP_FILES = !System.getProperty("os.name").toLowerCase().startsWith("windows");
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(HASH_BUFFER_SIZE));
+
+    public void write(Path installFolder) throws IOException {
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(installFolder)) {
+            files = walk.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .filter(path -> !isBookkeepingFile(installFolder, path))
+                    .collect(Collectors.toList());
+        }
+
+        final List<Entry> entries;
+        try {
+            entries = files.parallelStream()
+                    .map(file -> {
+                        try {
+                            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                            return new Entry(
+                                    relativeName(installFolder, file),
+                                    attributes.size(),
+                                    attributes.lastModifiedTime().toMillis(),
+                                    sha256Hex(file));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .sorted((a, b) -> a.getPath().compareTo(b.getPath()))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        final ObjectNode root = MAPPER.createObjectNode();
+        root.put("algorithm", "SHA-256");
+        final ArrayNode filesNode = root.putArray("files");
+        for (Entry entry : entries) {
+            filesNode.addObject()
+                    .put("path", entry.getPath())
+                    .put("size", entry.getSize())
+                    .put("lastModified", entry.getLastModified())
+                    .put("sha256", entry.getSha256());
+        }
+        Files.write(installFolder.resolve(MANIFEST_FILE_NAME), MAPPER.writeValueAsBytes(root));
+    }
+
+    /**
+     * Files written by this library at the root of an install folder, all named '.install-*', are not part of the java distribution.
+     */
+    static boolean isBookkeepingFile(Path installFolder, Path file) {
+        return installFolder.equals(file.getParent()) && file.getFileName().toString().startsWith(BOOKKEEPING_FILE_PREFIX);
+    }
+
+    public List<Entry> read(Path installFolder) throws IOException {
+        final JsonNode root = MAPPER.readTree(installFolder.resolve(MANIFEST_FILE_NAME).toFile());
+        return StreamSupport.stream(root.path("files").spliterator(), false)
+                .map(node -> new Entry(
+                        node.path("path").textValue(),
+                        node.path("size").longValue(),
+                        node.path("lastModified").longValue(),
+                        node.path("sha256").textValue()))
+                .collect(Collectors.toList());
+    }
+
+    public boolean exists(Path installFolder) {
+        return Files.isRegularFile(installFolder.resolve(MANIFEST_FILE_NAME));
+    }
+
+    /**
+     * Checks every file of the manifest in parallel.
+     * {@link VerificationMode#SIZE_AND_MTIME} only reads file attributes, {@link VerificationMode#FULL} also compares hashes.
+     */
+    public VerificationResult verify(Path installFolder, VerificationMode mode) {
+        if (!exists(installFolder)) {
+            return new VerificationResult(installFolder, false, Collections.singletonList("Missing manifest " + MANIFEST_FILE_NAME));
+        }
+
+        final List<Entry> entries;
+        try {
+            entries = read(installFolder);
+        } catch (IOException e) {
+            return new VerificationResult(installFolder, false, Collections.singletonList("Unreadable manifest: " + e.getMessage()));
+        }
+
+        final List<String> errors = entries.parallelStream()
+                .map(entry -> verifyEntry(installFolder, entry, mode))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return new VerificationResult(installFolder, errors.isEmpty(), errors);
+    }
+
+    private static String verifyEntry(Path installFolder, Entry entry, VerificationMode mode) {
+        final Path root = installFolder.toAbsolutePath().normalize();
+        final Path file = entry.getPath() == null ? null : root.resolve(entry.getPath()).normalize();
+        if (file == null || file.equals(root) || !file.startsWith(root)) {
+            return String.format("Bad manifest entry %s : outside of the install", entry.getPath());
+        }
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.size() != entry.getSize()) {
+                return String.format("Size mismatch for %s : %d != %d", entry.getPath(), attributes.size(), entry.getSize());
+            }
+            if (mode == VerificationMode.SIZE_AND_MTIME) {
+                if (attributes.lastModifiedTime().toMillis() != entry.getLastModified()) {
+                    return String.format("Modification time mismatch for %s", entry.getPath());
+                }
+                return null;
+            }
+            final String sha256 = sha256Hex(file);
+            if (!sha256.equals(entry.getSha256())) {
+                return String.format("Hash mismatch for %s : %s != %s", entry.getPath(), sha256, entry.getSha256());
+            }
+            return null;
+        } catch (IOException e) {
+            return String.format("Unreadable file %s : %s", entry.getPath(), e);
+        }
+    }
+
+    static String sha256Hex(Path file) throws IOException {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        final ByteBuffer buffer = HASH_BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (CAN_MAP_FILES && size > MAPPED_HASH_THRESHOLD) {
+                for (long position = 0; position < size; position += MAPPED_HASH_WINDOW) {
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_HASH_WINDOW, size - position)));
+                }
+                return Hex.encodeHexString(digest.digest());
+            }
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static String relativeName(Path root, Path file) {
+        final List<String> names = new ArrayList<>();
+        for (Path name : root.relativize(file)) {
+            names.add(name.toString());
+        }
+        return String.join("/", names);
+    }
+
+    @Data
+    public static class Entry {
+        private final String path; // relative to the install folder, '/' separated
+        private final long size;
+        private final long lastModified;
+        private final String sha256;
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallMetadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Reads and writes the metadata of an install, stored as a properties file inside the install folder.
+ * A plain properties file is used so that the local lookup doesn't need to load a JSON parser.
+ */
+public class InstallMetadataFile {
+    public static final String METADATA_FILE_NAME = ".install-metadata.properties";
+
+    private static final String RELEASE_NAME = "releaseName";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String OS = "os";
+    private static final String ARCH = "arch";
+    private static final String IMAGE_TYPE = "imageType";
+    private static final String CHECKSUM = "checksum";
+    private static final String EXTRACTION_INCLUDES = "extraction.includes";
+    private static final String EXTRACTION_EXCLUDES = "extraction.excludes";
+    private static final String CDS_ARCHIVES = "cds.archives";
+    private static final String TAR_METADATA_PRESERVED = "tar.metadata.preserved";
+
+    public void write(Path installFolder, InstallMetadata metadata) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(RELEASE_NAME, metadata.getReleaseName());
+        properties.setProperty(TIMESTAMP, metadata.getTimestamp());
+        properties.setProperty(OS, metadata.getOs());
+        properties.setProperty(ARCH, metadata.getArch());
+        properties.setProperty(IMAGE_TYPE, metadata.getImageType().getValue());
+        properties.setProperty(CHECKSUM, metadata.getChecksum());
+        setIndexed(properties, EXTRACTION_INCLUDES, metadata.getExtractionFilter().getIncludes());
+        setIndexed(properties, EXTRACTION_EXCLUDES, metadata.getExtractionFilter().getExcludes());
+        properties.setProperty(CDS_ARCHIVES, String.join(",", metadata.getCdsArchives()));
+        properties.setProperty(TAR_METADATA_PRESERVED, String.valueOf(metadata.isTarMetadataPreserved()));
+
+        try (OutputStream out = Files.newOutputStream(installFolder.resolve(METADATA_FILE_NAME))) {
+            properties.store(out, "Written by adopt-openjdk-downloader");
+        }
+    }
+
+    /**
+     * @return the metadata of the install, empty for installs made before metadata files were introduced.
+     */
+    public Optional<InstallMetadata> read(Path installFolder) throws IOException {
+        final Path file = installFolder.resolve(METADATA_FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return Optional.of(InstallMetadata.builder()
+                .releaseName(properties.getProperty(RELEASE_NAME))
+                .timestamp(properties.getProperty(TIMESTAMP))
+                .os(properties.getProperty(OS))
+                .arch(properties.getProperty(ARCH))
+                .imageType(Model.ImageType.JDK.getValue().equals(properties.getProperty(IMAGE_TYPE)) ? Model.ImageType.JDK : Model.ImageType.JRE)
+                .checksum(properties.getProperty(CHECKSUM))
+                .extractionFilter(ExtractionFilter.of(
+                        getIndexed(properties, EXTRACTION_INCLUDES),
+                        getIndexed(properties, EXTRACTION_EXCLUDES)))
+                .cdsArchives(split(properties.getProperty(CDS_ARCHIVES)))
+                .tarMetadataPreserved(Boolean.parseBoolean(properties.getProperty(TAR_METADATA_PRESERVED)))
+                .build());
+    }
+
+    /**
+     * @return the extraction filter the install was made with, {@link ExtractionFilter#NONE} for a full install.
+     */
+    public ExtractionFilter readExtractionFilter(Path installFolder) throws IOException {
+        return read(installFolder).map(InstallMetadata::getExtractionFilter).orElse(ExtractionFilter.NONE);
+    }
+
+    /**
+     * Globs may contain any character, eg. ',', so each one is stored in its own property: extraction.excludes.0=..., extraction.excludes.1=...
+     */
+    private static void setIndexed(Properties properties, String key, List<String> values) {
+        for (int i = 0; i < values.size(); i++) {
+            properties.setProperty(key + "." + i, values.get(i));
+        }
+    }
+
+    private static List<String> getIndexed(Properties properties, String key) {
+        final List<String> values = new ArrayList<>();
+        for (int i = 0; properties.containsKey(key + "." + i); i++) {
+            values.add(properties.getProperty(key + "." + i));
+        }
+        return values;
+    }
+
+    private static List<String> split(String value) {
+        if (value == null || value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(value.split(","));
+    }
+}
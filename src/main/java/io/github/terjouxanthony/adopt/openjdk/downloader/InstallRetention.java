@@ -0,0 +1,147 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.RetentionPolicy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Last-used times and pins of installs, and eviction of the least recently used installs across a whole javaDownloaderDir.
+ * <p>
+ * The last-used time is the modification time of a bookkeeping file, touched each time an install is resolved.
+ * Installs made before it existed fall back to the modification time of their folder.
+ */
+@Slf4j
+public class InstallRetention {
+    static final String LAST_USED_FILE_NAME = InstallManifest.BOOKKEEPING_FILE_PREFIX + "last-used";
+    static final String PINNED_FILE_NAME = InstallManifest.BOOKKEEPING_FILE_PREFIX + "pinned";
+
+    private final FileSystemHandler fileSystemHandler;
+    private final TrashCollector trashCollector;
+
+    public InstallRetention(FileSystemHandler fileSystemHandler, TrashCollector trashCollector) {
+        this.fileSystemHandler = fileSystemHandler;
+        this.trashCollector = trashCollector;
+    }
+
+    /**
+     * A single timestamp update, failures (eg. read-only folder) are ignored.
+     */
+    public void touch(Path installFolder) {
+        final Path lastUsedFile = installFolder.resolve(LAST_USED_FILE_NAME);
+        try {
+            try {
+                Files.setLastModifiedTime(lastUsedFile, FileTime.from(Instant.now()));
+            } catch (NoSuchFileException e) {
+                Files.createFile(lastUsedFile);
+            }
+        } catch (IOException e) {
+            log.debug("Impossible to record last use of {}: {}", installFolder, e.toString());
+        }
+    }
+
+    public void pin(Path installFolder) throws IOException {
+        if (!isPinned(installFolder)) {
+            Files.createFile(installFolder.resolve(PINNED_FILE_NAME));
+        }
+    }
+
+    public void unpin(Path installFolder) throws IOException {
+        Files.deleteIfExists(installFolder.resolve(PINNED_FILE_NAME));
+    }
+
+    public boolean isPinned(Path installFolder) {
+        return fileSystemHandler.fileOrFolderExists(installFolder.resolve(PINNED_FILE_NAME));
+    }
+
+    /**
+     * Evicts the installs idle for longer than the policy allows, then the least recently used ones until the size budget is met.
+     * Pinned, leased and locked installs are never evicted, but they count in the size budget.
+     *
+     * @param lockedInstalls installs of releases locked in the lock files of the policy
+     * @return the evicted install folders
+     */
+    public List<Path> apply(Path javaDownloaderDir, List<Path> installs, Set<Path> lockedInstalls, RetentionPolicy policy) throws IOException {
+        final Instant now = Instant.now();
+        final List<InstallUsage> usages;
+        try {
+            usages = installs.parallelStream()
+                    .map(install -> {
+                        try {
+                            return new InstallUsage(install, lastUsed(install), sizeOf(install));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .sorted(Comparator.comparing(InstallUsage::getLastUsed))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long totalSize = usages.stream().mapToLong(InstallUsage::getSize).sum();
+        final List<Path> evicted = new ArrayList<>();
+        for (InstallUsage usage : usages) {
+            final boolean idle = policy.getMaxIdleTime() != null && usage.getLastUsed().plus(policy.getMaxIdleTime()).isBefore(now);
+            final boolean overBudget = policy.getMaxTotalSizeBytes() != null && totalSize > policy.getMaxTotalSizeBytes();
+            if (!idle && !overBudget) {
+                continue;
+            }
+            final Path install = usage.getInstall();
+            if (isPinned(install) || lockedInstalls.contains(install)) {
+                continue;
+            }
+            if (InstallLease.runIfNotLeased(install, () -> trashCollector.trash(javaDownloaderDir, install))) {
+                log.info("Evicted {} last used {} ({} bytes)", install, usage.getLastUsed(), usage.getSize());
+                totalSize -= usage.getSize();
+                evicted.add(install);
+            }
+        }
+
+        if (policy.getMaxTotalSizeBytes() != null && totalSize > policy.getMaxTotalSizeBytes()) {
+            log.warn("Installs of {} still take {} bytes, over the budget of {} bytes: the other installs are pinned, leased or locked",
+                    javaDownloaderDir, totalSize, policy.getMaxTotalSizeBytes());
+        }
+        return evicted;
+    }
+
+    private static Instant lastUsed(Path installFolder) throws IOException {
+        final Path lastUsedFile = installFolder.resolve(LAST_USED_FILE_NAME);
+        return Files.getLastModifiedTime(Files.exists(lastUsedFile) ? lastUsedFile : installFolder).toInstant();
+    }
+
+    private static long sizeOf(Path installFolder) throws IOException {
+        try (Stream<Path> walk = Files.walk(installFolder)) {
+            long size = 0;
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isRegularFile()) {
+                    size += attributes.size();
+                }
+            }
+            return size;
+        }
+    }
+
+    @Data
+    private static class InstallUsage {
+        private final Path install;
+        private final Instant lastUsed;
+        private final long size;
+    }
+}
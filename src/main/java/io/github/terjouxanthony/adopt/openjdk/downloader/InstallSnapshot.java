@@ -0,0 +1,203 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Single-file snapshot of installs, to seed a machine without downloading or extracting the original archives again.
+ * <p>
+ * A snapshot is a tar stream of the install folders, named relatively to the javaDownloaderDir, with their bookkeeping files.
+ * Symbolic links, POSIX permissions and modification times are kept, so restored installs pass a quick verification.
+ * Files named *.tar.gz are compressed at the fastest level, other files are plain tar.
+ */
+public class InstallSnapshot {
+
+    /* Large sequential reads and writes, the snapshot is several hundreds of MB */
+    private static final int IO_BUFFER_SIZE = 1024 * 1024;
+    private static final int PERMISSION_BITS = 0777;
+    /* tar headers only keep whole seconds, the manifest compares modification times in milliseconds */
+    private static final String MTIME_MILLIS_PAX_HEADER = "JAVADOWNLOADER.mtimeMillis";
+
+    public void write(Path javaDownloaderDir, List<Path> installFolders, Path snapshotFile) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream out = compressIfNeeded(snapshotFile, new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE));
+             TarArchiveOutputStream tarOut = new TarArchiveOutputStream(out)) {
+            tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+            for (Path installFolder : installFolders) {
+                final List<Path> paths;
+                try (Stream<Path> walk = Files.walk(installFolder)) {
+                    paths = walk.sorted().collect(Collectors.toList());
+                }
+                for (Path path : paths) {
+                    writeEntry(tarOut, javaDownloaderDir.relativize(path).toString().replace('\\', '/'), path, buffer);
+                }
+            }
+        }
+    }
+
+    private static void writeEntry(TarArchiveOutputStream tarOut, String name, Path path, ByteBuffer buffer) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        final TarArchiveEntry entry;
+        if (attributes.isSymbolicLink()) {
+            entry = new TarArchiveEntry(name, TarConstants.LF_SYMLINK);
+            entry.setLinkName(Files.readSymbolicLink(path).toString().replace('\\', '/'));
+        } else if (attributes.isDirectory()) {
+            entry = new TarArchiveEntry(name + "/");
+        } else {
+            entry = new TarArchiveEntry(name);
+            entry.setSize(attributes.size());
+        }
+        entry.setModTime(attributes.lastModifiedTime().toMillis());
+        entry.addPaxHeader(MTIME_MILLIS_PAX_HEADER, String.valueOf(attributes.lastModifiedTime().toMillis()));
+        final int fileType = entry.getMode() & ~PERMISSION_BITS;
+        readPermissions(path).ifPresent(permissions -> entry.setMode(fileType | permissions));
+        tarOut.putArchiveEntry(entry);
+
+        if (attributes.isRegularFile()) {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer.clear();
+                while (in.read(buffer) > 0) {
+                    tarOut.write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+            }
+        }
+        tarOut.closeArchiveEntry();
+    }
+
+    /**
+     * Restores every entry of the snapshot under the given folder, entries pointing outside of it are refused.
+     * Like {@link MetadataPreservingTarExtractor}, entries are only written in folders whose real path, symbolic links resolved, is inside it.
+     */
+    public void read(Path snapshotFile, Path targetFolder) throws IOException {
+        final Path target = targetFolder.toAbsolutePath().normalize();
+        Files.createDirectories(target);
+        final Path realTarget = target.toRealPath();
+        final Set<Path> checkedFolders = new HashSet<>();
+        try (InputStream in = decompressIfNeeded(snapshotFile, new BufferedInputStream(Files.newInputStream(snapshotFile), IO_BUFFER_SIZE));
+             TarArchiveInputStream tarIn = new TarArchiveInputStream(in)) {
+            TarArchiveEntry entry;
+            while ((entry = tarIn.getNextTarEntry()) != null) {
+                final Path path = checkInside(target, target.resolve(entry.getName()), entry.getName());
+                if (entry.isDirectory()) {
+                    createFolders(realTarget, checkedFolders, path, entry.getName());
+                    continue;
+                }
+                createFolders(realTarget, checkedFolders, path.getParent(), entry.getName());
+                if (entry.isSymbolicLink()) {
+                    checkInside(target, path.getParent().resolve(entry.getLinkName()), entry.getName());
+                    Files.createSymbolicLink(path, path.getFileSystem().getPath(entry.getLinkName()));
+                    checkedFolders.removeIf(folder -> folder.startsWith(path));
+                    continue;
+                }
+                Files.copy(tarIn, path);
+                final String mtimeMillis = entry.getExtraPaxHeader(MTIME_MILLIS_PAX_HEADER);
+                Files.setLastModifiedTime(path, FileTime.fromMillis(mtimeMillis != null ? Long.parseLong(mtimeMillis) : entry.getModTime().getTime()));
+                final PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+                if (view != null) {
+                    view.setPermissions(toPermissions(entry.getMode()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Catches folders reached through a chain of symbolic links pointing outside, eg. "a/up" -> "..", "esc" -> "a/up/..", then an entry "esc/x".
+     * The deepest existing folder is checked before creating the missing ones, so nothing is ever created outside.
+     */
+    private static void createFolders(Path realTarget, Set<Path> checkedFolders, Path folder, String entryName) throws IOException {
+        if (checkedFolders.contains(folder)) {
+            return;
+        }
+        Path existing = folder;
+        while (!Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        checkRealPath(realTarget, existing, entryName);
+        Files.createDirectories(folder);
+        checkRealPath(realTarget, folder, entryName);
+        checkedFolders.add(folder);
+    }
+
+    private static void checkRealPath(Path realTarget, Path folder, String entryName) throws IOException {
+        if (!folder.toRealPath().startsWith(realTarget)) {
+            throw new IOException("Bad snapshot entry: " + entryName);
+        }
+    }
+
+    private static Path checkInside(Path target, Path path, String entryName) throws IOException {
+        final Path normalized = path.normalize();
+        if (!normalized.startsWith(target)) {
+            throw new IOException("Bad snapshot entry: " + entryName);
+        }
+        return normalized;
+    }
+
+    private static OutputStream compressIfNeeded(Path snapshotFile, OutputStream out) throws IOException {
+        if (!snapshotFile.getFileName().toString().endsWith(".gz")) {
+            return out;
+        }
+        final GzipParameters parameters = new GzipParameters();
+        parameters.setCompressionLevel(Deflater.BEST_SPEED);
+        return new GzipCompressorOutputStream(out, parameters);
+    }
+
+    private static InputStream decompressIfNeeded(Path snapshotFile, InputStream in) throws IOException {
+        return snapshotFile.getFileName().toString().endsWith(".gz") ? new GzipCompressorInputStream(in) : in;
+    }
+
+    private static Optional<Integer> readPermissions(Path path) throws IOException {
+        final PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null) {
+            return Optional.empty();
+        }
+        int mode = 0;
+        for (PosixFilePermission permission : view.readAttributes().permissions()) {
+            mode |= 1 << (8 - permission.ordinal());
+        }
+        return Optional.of(mode);
+    }
+
+    private static Set<PosixFilePermission> toPermissions(int mode) {
+        final Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (PosixFilePermission permission : PosixFilePermission.values()) {
+            if ((mode & (1 << (8 - permission.ordinal()))) != 0) {
+                permissions.add(permission);
+            }
+        }
+        return permissions;
+    }
+}
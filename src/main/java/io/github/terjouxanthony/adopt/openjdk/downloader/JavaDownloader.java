@@ -3,27 +3,49 @@ package io.github.terjouxanthony.adopt.openjdk.downloader;
 import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester.HttpStatusException;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallMetadata;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JlinkParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.MatrixInstallParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.Platform;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseBinaries;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseInfo;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseNamesRequest;
-import lombok.AllArgsConstructor;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.RetentionPolicy;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.VerificationMode;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.VerificationResult;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Headers;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -32,22 +54,76 @@ import static io.github.terjouxanthony.adopt.openjdk.downloader.Utils.transferTo
 import static java.util.Objects.requireNonNull;
 
 @Slf4j
-@AllArgsConstructor
 public class JavaDownloader {
     private static final Pattern JDK_RELEASE_NAME_REGEX = Pattern.compile("^\\D+(\\d+)");
     private static final String SEPARATOR_IN_FILENAMES = "--";
-    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ssz");
+    private static final String FILTERED_INSTALL_MARKER = "~";
+    public static final String BUNDLE_INDEX_FILE_NAME = "bundle.json";
+    public static final String JLINK_FOLDER_NAME = "jlink";
+    /* Copies from network volumes are bound by the latency of each file rather than by throughput */
+    private static final int SHARED_CACHE_COPY_PARALLELISM = 8;
+    private static final Duration RELEASE_NAME_INDEX_TTL = Duration.ofHours(1);
+    private static final String RELEASE_NAME_INDEX_KEY = "release-names";
+    /* Orders install folders by the version of their release, folders with unknown release name formats come first */
+    private static final Comparator<Path> BY_RELEASE_VERSION = Comparator
+            .comparing((Path path) -> JavaReleaseVersion.parse(releaseNameOf(path.getFileName().toString())).orElse(null),
+                    Comparator.nullsFirst(Comparator.<JavaReleaseVersion>naturalOrder()))
+            .thenComparing(path -> path.getFileName().toString());
 
-    private final ArchiveUnpacker archiveUnpacker;
+    private volatile ArchiveUnpacker archiveUnpacker; // created on first extraction, installs found locally never load commons-compress
     private final FileSystemHandler fileSystemHandler;
     private final HttpRequester httpRequester;
     private final AdoptOpenJdkApi adoptOpenJdkApi;
+    private final DownloadPipeline downloadPipeline;
+    private final InstallManifest installManifest = new InstallManifest();
+    private final InstallMetadataFile installMetadataFile = new InstallMetadataFile();
+    private final CdsArchiveGenerator cdsArchiveGenerator = new CdsArchiveGenerator();
+    private final TrashCollector trashCollector;
+    private final InstallRetention installRetention;
+    private volatile ReleaseNameIndex releaseNameIndex;
+    private final SingleFlight<String, ReleaseNameIndex> releaseNameIndexRefreshes = new SingleFlight<>();
+    private final SingleFlight<InstallJavaParams, JavaInstallDescription> installs = new SingleFlight<>();
+    private final Object lockFileMonitor = new Object(); /* serializes the lock file read-modify-write cycles of concurrent installs */
 
     public JavaDownloader() {
-        this.archiveUnpacker = new ArchiveUnpacker();
         this.fileSystemHandler = new FileSystemHandler();
         this.httpRequester = new HttpRequester();
         this.adoptOpenJdkApi = new AdoptOpenJdkApi(this.httpRequester);
+        this.downloadPipeline = new DownloadPipeline();
+        this.trashCollector = new TrashCollector(this.fileSystemHandler);
+        this.installRetention = new InstallRetention(this.fileSystemHandler, this.trashCollector);
+    }
+
+    public JavaDownloader(ArchiveUnpacker archiveUnpacker, FileSystemHandler fileSystemHandler, HttpRequester httpRequester, AdoptOpenJdkApi adoptOpenJdkApi) {
+        this(archiveUnpacker, fileSystemHandler, httpRequester, adoptOpenJdkApi, new DownloadPipeline());
+    }
+
+    public JavaDownloader(ArchiveUnpacker archiveUnpacker, FileSystemHandler fileSystemHandler, HttpRequester httpRequester, AdoptOpenJdkApi adoptOpenJdkApi, DownloadPipeline downloadPipeline) {
+        this.archiveUnpacker = archiveUnpacker;
+        this.fileSystemHandler = fileSystemHandler;
+        this.httpRequester = httpRequester;
+        this.adoptOpenJdkApi = adoptOpenJdkApi;
+        this.downloadPipeline = downloadPipeline;
+        this.trashCollector = new TrashCollector(fileSystemHandler);
+        this.installRetention = new InstallRetention(fileSystemHandler, this.trashCollector);
+    }
+
+    private ArchiveUnpacker getArchiveUnpacker() {
+        if (archiveUnpacker == null) {
+            synchronized (this) {
+                if (archiveUnpacker == null) {
+                    archiveUnpacker = new ArchiveUnpacker();
+                }
+            }
+        }
+        return archiveUnpacker;
+    }
+
+    /**
+     * @return the pool of buffers shared by the pipelined downloads, its occupancy tells whether the disk or the network is the bottleneck.
+     */
+    public BufferPool getDownloadBufferPool() {
+        return downloadPipeline.getBufferPool();
     }
 
     public List<String> listAllReleases() throws HttpStatusException, IOException {
@@ -57,26 +133,685 @@ public class JavaDownloader {
                 .build());
     }
 
+    /**
+     * @return the index of all GA release names, built from {@link #listAllReleases()} and cached for an hour.
+     * Callers finding it expired at the same time share a single refresh.
+     */
+    public ReleaseNameIndex getReleaseNameIndex() throws HttpStatusException, IOException {
+        final ReleaseNameIndex index = releaseNameIndex;
+        if (!isExpired(index)) {
+            return index;
+        }
+        return refreshReleaseNameIndex(() -> {
+            final ReleaseNameIndex current = releaseNameIndex;
+            return isExpired(current) ? loadReleaseNameIndex() : current; // refreshed meanwhile
+        });
+    }
+
+    public ReleaseNameIndex refreshReleaseNameIndex() throws HttpStatusException, IOException {
+        return refreshReleaseNameIndex(this::loadReleaseNameIndex);
+    }
+
+    private ReleaseNameIndex refreshReleaseNameIndex(Callable<ReleaseNameIndex> refresh) throws HttpStatusException, IOException {
+        try {
+            return releaseNameIndexRefreshes.execute(RELEASE_NAME_INDEX_KEY, refresh);
+        } catch (HttpStatusException | IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the release name index");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ReleaseNameIndex loadReleaseNameIndex() throws HttpStatusException, IOException {
+        final ReleaseNameIndex index = new ReleaseNameIndex(listAllReleases());
+        releaseNameIndex = index;
+        return index;
+    }
+
+    private static boolean isExpired(ReleaseNameIndex index) {
+        return index == null || System.nanoTime() - index.getCreatedAtNanos() > RELEASE_NAME_INDEX_TTL.toNanos();
+    }
+
+    /**
+     * @param versionRange maven style version range, eg. [11,12) or 16
+     * @return the latest hotspot release name in the range, resolved locally from the cached release name index.
+     */
+    public Optional<String> findLatestRelease(String versionRange) throws HttpStatusException, IOException {
+        return getReleaseNameIndex().findLatest(VersionRange.parse(versionRange));
+    }
+
+    /**
+     * @param versionRange maven style version range, eg. [11,12) or 16
+     * @return the hotspot release names in the range, latest first, resolved locally from the cached release name index.
+     */
+    public List<String> findReleases(String versionRange) throws HttpStatusException, IOException {
+        return getReleaseNameIndex().find(VersionRange.parse(versionRange), false);
+    }
+
+    /**
+     * Waits for the background deletion of the installs superseded with the 'deferredCleanup' flag.
+     *
+     * @return false if the timeout elapsed before.
+     */
+    public boolean awaitBackgroundCleanup(long timeout, TimeUnit unit) throws InterruptedException {
+        return trashCollector.awaitPendingDeletions(timeout, unit);
+    }
+
+    /**
+     * Checks an install against the manifest written when it was extracted.
+     */
+    public VerificationResult verifyInstall(Path installPath, VerificationMode mode) {
+        return installManifest.verify(installPath, mode);
+    }
+
+    /**
+     * Checks every install found under the given root folder, installs are verified in parallel.
+     */
+    public List<VerificationResult> verifyAllInstalls(Path javaDownloaderDir, VerificationMode mode) throws IOException {
+        return listInstalls(javaDownloaderDir).parallelStream()
+                .map(installPath -> installManifest.verify(installPath, mode))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return every install folder found under the given root folder, laid out as {@code <imageType>/<javaVersion>/<os>_<arch>/<install>}.
+     */
+    public List<Path> listInstalls(Path javaDownloaderDir) throws IOException {
+        final List<Path> installs = new ArrayList<>();
+        for (ImageType imageType : ImageType.values()) {
+            final Path imageTypeFolder = javaDownloaderDir.resolve(imageType.getValue());
+            if (!fileSystemHandler.fileOrFolderExists(imageTypeFolder)) {
+                continue;
+            }
+            for (Path versionFolder : fileSystemHandler.listFolder(imageTypeFolder)) {
+                if (!Files.isDirectory(versionFolder) || !versionFolder.getFileName().toString().chars().allMatch(Character::isDigit)) {
+                    continue;
+                }
+                for (Path osArchFolder : fileSystemHandler.listFolder(versionFolder)) {
+                    if (!Files.isDirectory(osArchFolder)) {
+                        continue;
+                    }
+                    for (Path installFolder : fileSystemHandler.listFolder(osArchFolder)) {
+                        if (isInstallFolder(installFolder)) {
+                            installs.add(installFolder);
+                        }
+                    }
+                }
+            }
+        }
+        return installs;
+    }
+
+    /**
+     * Deletes the installs superseded by a later release, ie. every install but the latest of each os/arch folder.
+     * Installs extracted with different extraction filters are kept apart, the latest of each is kept.
+     *
+     * @return the deleted install folders
+     */
+    public List<Path> cleanSupersededInstalls(Path javaDownloaderDir) throws IOException {
+        final Map<String, List<Path>> installsByKind = listInstalls(javaDownloaderDir).stream()
+                .collect(Collectors.groupingBy(path -> path.getParent() + "/" + extractionFilterMarkerOf(path.getFileName().toString())));
+
+        final List<Path> deletedInstalls = new ArrayList<>();
+        for (List<Path> installs : installsByKind.values()) {
+            installs.sort(BY_RELEASE_VERSION);
+            for (Path install : installs.subList(0, installs.size() - 1)) {
+                log.info("Deleting superseded install {} ...", install);
+                fileSystemHandler.deleteRecursively(install);
+                deletedInstalls.add(install);
+            }
+        }
+        return deletedInstalls;
+    }
+
+    /**
+     * Evicts installs and jlink runtimes of the javaDownloaderDir according to the policy, least recently used first.
+     * Installs pinned with {@link #pinInstall(Path)}, leased with {@link #leaseInstall(Path)} or locked in the lock files of the policy are kept.
+     *
+     * @return the evicted install and runtime folders
+     */
+    public List<Path> applyRetention(Path javaDownloaderDir, RetentionPolicy policy) throws IOException {
+        trashCollector.collectLeftovers(javaDownloaderDir);
+        final List<Path> installs = listInstalls(javaDownloaderDir);
+        final Set<Path> lockedInstalls = new HashSet<>();
+        for (Path lockFile : policy.getLockFiles()) {
+            for (Map.Entry<JavaLockFile.Key, ReleaseInfo> locked : JavaLockFile.read(lockFile).getEntries().entrySet()) {
+                installs.stream()
+                        .filter(install -> isInstallOf(install, locked.getKey(), locked.getValue()))
+                        .forEach(lockedInstalls::add);
+            }
+        }
+        installs.addAll(listJlinkRuntimes(javaDownloaderDir));
+        return installRetention.apply(javaDownloaderDir, installs, lockedInstalls, policy);
+    }
+
+    /**
+     * Runtime folders are named release~fingerprint--os_arch in the {@value #JLINK_FOLDER_NAME} folder, unlike the work folders of jlink runs.
+     */
+    private List<Path> listJlinkRuntimes(Path javaDownloaderDir) throws IOException {
+        final Path jlinkFolder = javaDownloaderDir.resolve(JLINK_FOLDER_NAME);
+        final List<Path> runtimes = new ArrayList<>();
+        if (!fileSystemHandler.fileOrFolderExists(jlinkFolder)) {
+            return runtimes;
+        }
+        for (Path runtimeFolder : fileSystemHandler.listFolder(jlinkFolder)) {
+            final String name = runtimeFolder.getFileName().toString();
+            if (Files.isDirectory(runtimeFolder) && name.contains(FILTERED_INSTALL_MARKER) && name.contains(SEPARATOR_IN_FILENAMES)
+                    && !TrashCollector.WORK_FOLDER_PATTERN.matcher(name).matches()) {
+                runtimes.add(runtimeFolder);
+            }
+        }
+        return runtimes;
+    }
+
+    private static boolean isInstallOf(Path installFolder, JavaLockFile.Key key, ReleaseInfo releaseInfo) {
+        return installFolder.getParent().getFileName().toString().equals(osArchString(key.getOs(), key.getArch()))
+                && installFolder.getParent().getParent().getParent().getFileName().toString().equals(key.getImageType())
+                && releaseNameOf(installFolder.getFileName().toString()).equals(releaseInfo.getReleaseName());
+    }
+
+    /**
+     * Pinned installs are never evicted by retention nor cleaned when another release of the same version is installed.
+     */
+    public void pinInstall(Path installFolder) throws IOException {
+        installRetention.pin(installFolder);
+    }
+
+    public void unpinInstall(Path installFolder) throws IOException {
+        installRetention.unpin(installFolder);
+    }
+
+    /**
+     * Keeps the install from being evicted or cleaned, by any process, until the lease is closed. Eg. for the duration of a build.
+     */
+    public InstallLease leaseInstall(Path installFolder) throws IOException {
+        return InstallLease.acquire(installFolder);
+    }
+
+    /**
+     * Concurrent calls with equal params, eg. from the threads of a parallel build, share a single install and its result or exception.
+     */
     public JavaInstallDescription installJava(InstallJavaParams params) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
 
-        final Path installPath = installJavaWithoutCleaning(params);
-        if (params.isCleanExistingSameMajorVersion()) {
-            log.info("Flag 'cleanExistingSameMajorVersion' enabled, cleaning {} folders other than {} ...", params.getImageType(), installPath);
-            fileSystemHandler.listFolder(installPath.getParent())
-                    .stream()
-                    .filter(path -> !path.equals(installPath))
-                    .forEach(path -> {
-                        log.info("Deleting other {} {} ...", params.getImageType(), path);
-                        fileSystemHandler.deleteRecursively(path);
-                    });
-            log.info("{} folders Cleaning done", params.getImageType());
+        trashCollector.collectLeftovers(params.getJavaDownloaderDir());
+        prepareInstallParentFolder(params); // sets the java version from the release name, before the params are used as a key
+
+        try {
+            return installs.execute(params, () -> installJavaNow(params));
+        } catch (IOException | InterruptedException | URISyntaxException | HttpStatusException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
         }
+    }
+
+    private JavaInstallDescription installJavaNow(InstallJavaParams params) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        final Path installPath = installJavaWithoutCleaning(params);
+        installRetention.touch(installPath);
+        cleanOtherInstalls(params, installPath);
 
         return new JavaInstallDescription(installPath, findJavaHomeFolder(installPath, params.getOs()).get());
     }
 
+    /**
+     * Makes a trimmed runtime holding only the given modules out of an installed JDK, with the JDK's own jlink.
+     * <p>
+     * The JDK is installed first according to its params, it must run on this machine.
+     * Runtimes are cached in the {@value #JLINK_FOLDER_NAME} folder of the javaDownloaderDir, named after the release, the modules and options and the platform:
+     * later calls with the same combination return the cached runtime without running jlink.
+     *
+     * @return the runtime folder, it is also the java home
+     */
+    public JavaInstallDescription installJlinkRuntime(JlinkParams params) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        final InstallJavaParams jdkParams = params.getJdkParams();
+        if (jdkParams.getImageType() != ImageType.JDK) {
+            throw new IllegalArgumentException("jlink needs a jdk image type, not " + jdkParams.getImageType());
+        }
+        if (params.getModules().isEmpty()) {
+            throw new IllegalArgumentException("At least one module must be provided, eg. java.base");
+        }
+        if (!Utils.isHostPlatform(jdkParams.getOs(), jdkParams.getArch())) {
+            throw new IllegalArgumentException("The jlink of a JDK for os " + jdkParams.getOs() + " arch " + jdkParams.getArch() + " can't run on this machine");
+        }
+
+        final JavaInstallDescription jdk = installJava(jdkParams);
+        final Path runtimeFolder = jdkParams.getJavaDownloaderDir().resolve(JLINK_FOLDER_NAME)
+                .resolve(releaseNameOf(jdk.getInstallPath().getFileName().toString())
+                        + FILTERED_INSTALL_MARKER + params.fingerprint()
+                        + SEPARATOR_IN_FILENAMES + osArchString(jdkParams.getOs(), jdkParams.getArch()));
+        if (isValidJavaHome(runtimeFolder)) {
+            log.info("Found cached jlink runtime {}", runtimeFolder);
+            installRetention.touch(runtimeFolder);
+            return new JavaInstallDescription(runtimeFolder, runtimeFolder);
+        }
+
+        fileSystemHandler.mkdir(runtimeFolder.getParent());
+        final Path tmpRuntimeFolder = siblingFolder(runtimeFolder, "_temporary");
+        try {
+            final List<String> command = new ArrayList<>(Arrays.asList(
+                    jdk.getJdkHomePath().resolve("bin").resolve(jdkParams.getOs().equals("windows") ? "jlink.exe" : "jlink").toString(),
+                    "--add-modules", String.join(",", params.getModules()),
+                    "--output", tmpRuntimeFolder.toString(),
+                    "--compress=" + params.getCompress(),
+                    "--no-header-files",
+                    "--no-man-pages"));
+            if (params.isStripDebug()) {
+                command.add("--strip-debug");
+            }
+            command.addAll(params.getExtraOptions());
+
+            final long start = System.nanoTime();
+            log.info("Running jlink of {} for modules {} ...", jdk.getInstallPath().getFileName(), params.getModules());
+            Utils.runTool(command);
+            log.info("jlink runtime {} made in {} ms", runtimeFolder, Duration.ofNanos(System.nanoTime() - start).toMillis());
+            fileSystemHandler.moveAtomically(tmpRuntimeFolder, runtimeFolder);
+        } catch (IOException ex) {
+            if (fileSystemHandler.fileOrFolderExists(tmpRuntimeFolder)) {
+                fileSystemHandler.deleteRecursively(tmpRuntimeFolder);
+            }
+            if (!isValidJavaHome(runtimeFolder)) {
+                throw ex;
+            }
+            log.info("jlink runtime {} was made concurrently", runtimeFolder);
+        }
+        installRetention.touch(runtimeFolder);
+        return new JavaInstallDescription(runtimeFolder, runtimeFolder);
+    }
+
+    /**
+     * Installs the same release for several platforms and image types.
+     * The binaries of all platforms are resolved with a single API request, then downloaded and extracted concurrently.
+     */
+    public Map<Platform, JavaInstallDescription> installJavaMatrix(MatrixInstallParams matrixParams) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        if (matrixParams.getPlatforms().isEmpty()) {
+            throw new IllegalArgumentException("At least one platform must be provided");
+        }
+
+        final Map<Platform, InstallJavaParams> paramsByPlatform = new LinkedHashMap<>();
+        for (Platform platform : matrixParams.getPlatforms()) {
+            paramsByPlatform.put(platform, InstallJavaParams.builder()
+                    .os(platform.getOs())
+                    .arch(platform.getArch())
+                    .imageType(platform.getImageType())
+                    .javaVersion(matrixParams.getJavaVersion())
+                    .fullJavaReleaseName(matrixParams.getFullJavaReleaseName())
+                    .downloadLatest(matrixParams.isDownloadLatest())
+                    .cleanExistingSameMajorVersion(matrixParams.isCleanExistingSameMajorVersion())
+                    .javaDownloaderDir(matrixParams.getJavaDownloaderDir())
+                    .offline(matrixParams.isOffline())
+                    .sharedCacheDirs(matrixParams.getSharedCacheDirs())
+                    .durability(matrixParams.getDurability())
+                    .preserveTarMetadata(matrixParams.isPreserveTarMetadata())
+                    .build());
+        }
+        trashCollector.collectLeftovers(matrixParams.getJavaDownloaderDir());
+
+        final Map<Platform, Path> installPaths = new LinkedHashMap<>();
+        if (matrixParams.isOffline()) {
+            for (Map.Entry<Platform, InstallJavaParams> entry : paramsByPlatform.entrySet()) {
+                final Path installParentFolder = prepareInstallParentFolder(entry.getValue());
+                installPaths.put(entry.getKey(), findLatestInstall(entry.getValue(), installParentFolder)
+                        .orElseThrow(() -> notAvailableLocally(entry.getValue(), installParentFolder)));
+            }
+        } else if (matrixParams.getFullJavaReleaseName() != null) {
+            for (Map.Entry<Platform, InstallJavaParams> entry : paramsByPlatform.entrySet()) {
+                tryFindJavaLocally(entry.getValue(), prepareInstallParentFolder(entry.getValue()))
+                        .ifPresent(path -> installPaths.put(entry.getKey(), path));
+            }
+        }
+
+        if (installPaths.size() < paramsByPlatform.size()) {
+            installPaths.clear();
+            final ReleaseBinaries releaseBinaries = (matrixParams.getFullJavaReleaseName() != null) ?
+                    adoptOpenJdkApi.getReleaseBinaries(matrixParams.getFullJavaReleaseName()) :
+                    adoptOpenJdkApi.getLatestReleaseBinaries(requireNonNull(matrixParams.getJavaVersion(),
+                            "Either java version (eg. 16) or full java release name (eg. 16.0.1+9) must be provided"), matrixParams.getPlatforms());
+
+            final List<Platform> missingPlatforms = matrixParams.getPlatforms().stream()
+                    .filter(platform -> !releaseBinaries.getBinaries().containsKey(platform))
+                    .collect(Collectors.toList());
+            if (!missingPlatforms.isEmpty()) {
+                throw new IllegalStateException("Java release " + releaseBinaries.getReleaseName() + " has no binaries for " + missingPlatforms);
+            }
+            log.info("Java release is {} for platforms {}", releaseBinaries.getReleaseName(), matrixParams.getPlatforms());
+
+            final ExecutorService executor = BlockingIoExecutors.newExecutor(
+                    "java-downloader-matrix", Math.min(matrixParams.getParallelism(), paramsByPlatform.size()));
+            try {
+                final Map<Platform, Future<Path>> futures = new LinkedHashMap<>();
+                for (Map.Entry<Platform, InstallJavaParams> entry : paramsByPlatform.entrySet()) {
+                    final InstallJavaParams params = entry.getValue();
+                    final ReleaseInfo releaseInfo = releaseBinaries.getBinaries().get(entry.getKey());
+                    futures.put(entry.getKey(), executor.submit(() -> installRelease(params, prepareInstallParentFolder(params), releaseInfo)));
+                }
+                for (Map.Entry<Platform, Future<Path>> entry : futures.entrySet()) {
+                    installPaths.put(entry.getKey(), getInstallResult(entry.getValue()));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        final Map<Platform, JavaInstallDescription> installations = new LinkedHashMap<>();
+        for (Map.Entry<Platform, Path> entry : installPaths.entrySet()) {
+            final InstallJavaParams params = paramsByPlatform.get(entry.getKey());
+            installRetention.touch(entry.getValue());
+            cleanOtherInstalls(params, entry.getValue());
+            installations.put(entry.getKey(), new JavaInstallDescription(entry.getValue(), findJavaHomeFolder(entry.getValue(), params.getOs()).get()));
+        }
+        return installations;
+    }
+
+    /**
+     * Installs the release archives of a bundle without any network access, eg. to seed air-gapped machines.
+     * <p>
+     * A bundle is either a folder or an uncompressed .tar file holding the archives and a {@value #BUNDLE_INDEX_FILE_NAME} index.
+     * The index has the format of a {@link JavaLockFile}: it gives the image type, os, arch and release information of each archive,
+     * archives are found by their package name. Archives are checked and extracted in parallel, releases already installed are skipped.
+     *
+     * @param parallelism maximum number of archives checked and extracted at the same time
+     * @return the install folders, in the order of the index
+     */
+    public List<Path> importBundle(Path bundle, Path javaDownloaderDir, int parallelism) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        trashCollector.collectLeftovers(javaDownloaderDir);
+        if (Files.isDirectory(bundle)) {
+            return importBundleFolder(bundle, javaDownloaderDir, parallelism);
+        }
+
+        final Path bundleFolder = javaDownloaderDir.resolve("bundle_temporary-" + UUID.randomUUID());
+        try {
+            log.info("Unpacking bundle {} ...", bundle);
+            getArchiveUnpacker().unTar(bundle, bundleFolder);
+            return importBundleFolder(bundleFolder, javaDownloaderDir, parallelism);
+        } finally {
+            if (fileSystemHandler.fileOrFolderExists(bundleFolder)) {
+                fileSystemHandler.deleteRecursively(bundleFolder);
+            }
+        }
+    }
+
+    /**
+     * Writes the given installs to a single snapshot file, eg. to seed new build machines with {@link #restoreSnapshot(Path, Path)}.
+     *
+     * @param installFolders installs of the javaDownloaderDir, as returned by {@link #listInstalls(Path)}
+     */
+    public void exportSnapshot(Path javaDownloaderDir, List<Path> installFolders, Path snapshotFile) throws IOException {
+        final Path root = javaDownloaderDir.toAbsolutePath().normalize();
+        final List<Path> installs = new ArrayList<>();
+        for (Path installFolder : installFolders) {
+            final Path install = installFolder.toAbsolutePath().normalize();
+            if (!install.startsWith(root) || root.relativize(install).getNameCount() != 4 || !Files.isDirectory(install)) {
+                throw new IllegalArgumentException(installFolder + " is not an install of " + javaDownloaderDir);
+            }
+            installs.add(install);
+        }
+        log.info("Exporting {} installs to {} ...", installs.size(), snapshotFile);
+        InstallSnapshotHolder.INSTANCE.write(root, installs, snapshotFile);
+    }
+
+    /**
+     * Restores the installs of a snapshot file, they are found locally right away.
+     * The snapshot is unpacked next to the installs, then each install is moved to its place with an atomic rename. Installs already present are kept.
+     *
+     * @return the install folders of the snapshot
+     */
+    public List<Path> restoreSnapshot(Path snapshotFile, Path javaDownloaderDir) throws IOException {
+        trashCollector.collectLeftovers(javaDownloaderDir);
+        final Path root = javaDownloaderDir.toAbsolutePath().normalize();
+        final Path stagingFolder = root.resolve("snapshot_temporary-" + UUID.randomUUID());
+        try {
+            log.info("Restoring snapshot {} ...", snapshotFile);
+            InstallSnapshotHolder.INSTANCE.read(snapshotFile, stagingFolder);
+            final List<Path> installFolders = new ArrayList<>();
+            for (Path stagedInstall : listInstalls(stagingFolder)) {
+                final Path installFolder = root.resolve(stagingFolder.relativize(stagedInstall));
+                if (isValidJavaInstall(installFolder, osOf(installFolder))) {
+                    log.info("{} is already installed", installFolder);
+                } else {
+                    if (fileSystemHandler.fileOrFolderExists(installFolder)) {
+                        fileSystemHandler.deleteRecursively(installFolder);
+                    }
+                    fileSystemHandler.mkdir(installFolder.getParent());
+                    fileSystemHandler.moveAtomically(stagedInstall, installFolder);
+                }
+                installFolders.add(installFolder);
+            }
+            return installFolders;
+        } finally {
+            if (fileSystemHandler.fileOrFolderExists(stagingFolder)) {
+                fileSystemHandler.deleteRecursively(stagingFolder);
+            }
+        }
+    }
+
+    /* the os/arch folder of an install is named <os>_<arch> */
+    private static String osOf(Path installFolder) {
+        final String osArch = installFolder.getParent().getFileName().toString();
+        return osArch.split("_")[0];
+    }
+
+    private List<Path> importBundleFolder(Path bundleFolder, Path javaDownloaderDir, int parallelism) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        final Path indexFile = bundleFolder.resolve(BUNDLE_INDEX_FILE_NAME);
+        if (!fileSystemHandler.fileOrFolderExists(indexFile)) {
+            throw new IllegalArgumentException("Invalid bundle " + bundleFolder + " , missing index file " + BUNDLE_INDEX_FILE_NAME);
+        }
+        final Map<JavaLockFile.Key, ReleaseInfo> releases = JavaLockFile.read(indexFile).getEntries();
+
+        final ExecutorService executor = BlockingIoExecutors.newExecutor("java-downloader-import", Math.min(parallelism, releases.size()));
+        try {
+            final List<Future<Path>> futures = new ArrayList<>();
+            for (Map.Entry<JavaLockFile.Key, ReleaseInfo> release : releases.entrySet()) {
+                final ReleaseInfo releaseInfo = release.getValue();
+                // names of the index become file names, they must not lead out of the bundle or the javaDownloaderDir
+                checkBundleName(bundleFolder, "package name", releaseInfo.getPackageName());
+                checkBundleName(bundleFolder, "release name", releaseInfo.getReleaseName());
+                checkBundleName(bundleFolder, "timestamp", releaseInfo.getTimestamp());
+                checkBundleName(bundleFolder, "os", release.getKey().getOs());
+                checkBundleName(bundleFolder, "arch", release.getKey().getArch());
+                final InstallJavaParams params = InstallJavaParams.builder()
+                        .os(release.getKey().getOs())
+                        .arch(release.getKey().getArch())
+                        .imageType(parseImageType(release.getKey().getImageType()))
+                        .fullJavaReleaseName(releaseInfo.getReleaseName())
+                        .javaDownloaderDir(javaDownloaderDir)
+                        .build();
+                final Path archivePath = bundleFolder.resolve(releaseInfo.getPackageName());
+                futures.add(executor.submit(() -> {
+                    final Path installFolder = prepareInstallParentFolder(params)
+                            .resolve(createInstallName(params.getOs(), params.getArch(), releaseInfo, params.getExtractionFilter()));
+                    if (isValidJavaInstall(installFolder, params.getOs())) {
+                        log.info("{} {} os {} arch {} is already installed : {}", params.getImageType(), releaseInfo.getReleaseName(), params.getOs(), params.getArch(), installFolder);
+                        return installFolder;
+                    }
+                    if (!fileSystemHandler.fileOrFolderExists(archivePath)) {
+                        throw new IOException("Missing archive " + archivePath + " in bundle " + bundleFolder);
+                    }
+                    installArchive(params, installFolder, releaseInfo, archivePath);
+                    return installFolder;
+                }));
+            }
+            final List<Path> installFolders = new ArrayList<>();
+            for (Future<Path> future : futures) {
+                installFolders.add(getInstallResult(future));
+            }
+            return installFolders;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void checkBundleName(Path bundleFolder, String what, String name) {
+        if (name == null || name.isEmpty() || name.equals(".") || name.equals("..")
+                || name.contains("/") || name.contains("\\") || name.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("Invalid bundle " + bundleFolder + " , bad " + what + " '" + name + "' in " + BUNDLE_INDEX_FILE_NAME);
+        }
+    }
+
+    private static ImageType parseImageType(String imageType) {
+        for (ImageType value : ImageType.values()) {
+            if (value.getValue().equals(imageType)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid image type " + imageType);
+    }
+
+    private static Path getInstallResult(Future<Path> future) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof HttpStatusException) {
+                throw (HttpStatusException) cause;
+            } else if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void cleanOtherInstalls(InstallJavaParams params, Path installPath) throws IOException {
+        if (!params.isCleanExistingSameMajorVersion()) {
+            return;
+        }
+        log.info("Flag 'cleanExistingSameMajorVersion' enabled, cleaning {} folders other than {} ...", params.getImageType(), installPath);
+        cleanInstalls(params, installPath.getParent(), Collections.singleton(installPath));
+    }
+
+    /**
+     * Cleans the installs for the params like 'cleanExistingSameMajorVersion' does, but keeping several installs,
+     * eg. releases of the same major version installed without cleaning by one build, which all stay in use.
+     * Pinned and leased installs are kept as well.
+     */
+    public void cleanInstallsExcept(InstallJavaParams params, Collection<Path> keptInstalls) throws IOException {
+        final Path installParentFolder = prepareInstallParentFolder(params);
+        log.info("Cleaning {} folders of {} other than {} ...", params.getImageType(), installParentFolder, keptInstalls);
+        cleanInstalls(params, installParentFolder, keptInstalls);
+    }
+
+    private void cleanInstalls(InstallJavaParams params, Path installParentFolder, Collection<Path> keptInstalls) throws IOException {
+        final Set<String> keptNames = keptInstalls.stream()
+                .map(install -> install.getFileName().toString())
+                .collect(Collectors.toSet());
+        for (Path path : fileSystemHandler.listFolder(installParentFolder)) {
+            if (keptNames.contains(path.getFileName().toString()) || !isInstallFolder(path)) {
+                continue; // eg. the work folders of installs in progress
+            }
+            if (installRetention.isPinned(path)) {
+                log.info("Keeping other {} {} , it is pinned", params.getImageType(), path);
+                continue;
+            }
+            final boolean cleaned = InstallLease.runIfNotLeased(path, () -> {
+                if (params.isDeferredCleanup()) {
+                    log.info("Moving other {} {} to the trash folder ...", params.getImageType(), path);
+                    trashCollector.trash(params.getJavaDownloaderDir(), path);
+                } else {
+                    log.info("Deleting other {} {} ...", params.getImageType(), path);
+                    fileSystemHandler.deleteRecursively(path);
+                }
+            });
+            if (!cleaned) {
+                log.info("Keeping other {} {} , it is in use", params.getImageType(), path);
+            }
+        }
+        log.info("{} folders Cleaning done", params.getImageType());
+    }
+
     private Path installJavaWithoutCleaning(InstallJavaParams params) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
 
+        final Path installParentFolder = prepareInstallParentFolder(params);
+
+        if (params.getLockFile() != null) {
+            return installLockedJava(params, installParentFolder);
+        }
+
+        if (params.isOffline()) {
+            return findLatestInstall(params, installParentFolder)
+                    .orElseThrow(() -> notAvailableLocally(params, installParentFolder));
+        }
+
+        Optional<Path> installPathOpt = tryFindJavaLocally(params, installParentFolder);
+        if (installPathOpt.isPresent()) {
+            return installPathOpt.get();
+        }
+
+        final ReleaseInfo releaseInfo = resolveReleaseInfo(params);
+        log.info("Java release is {}", releaseInfo);
+        return installRelease(params, installParentFolder, releaseInfo);
+    }
+
+    /**
+     * Installs the release pinned in the lock file, without any API request. The release is resolved and locked the first time.
+     * The 'downloadLatest' flag is ignored, use {@link #updateLock(InstallJavaParams)} to move to a newer release.
+     */
+    private Path installLockedJava(InstallJavaParams params, Path installParentFolder) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        final Optional<ReleaseInfo> lockedRelease;
+        synchronized (lockFileMonitor) {
+            lockedRelease = JavaLockFile.read(params.getLockFile()).get(JavaLockFile.Key.of(params));
+        }
+        if (lockedRelease.isPresent()) {
+            log.info("Java release is {}, locked in {}", lockedRelease.get().getReleaseName(), params.getLockFile());
+            if (params.isOffline()) {
+                final Path installFolder = installParentFolder.resolve(createInstallName(params.getOs(), params.getArch(), lockedRelease.get(), params.getExtractionFilter()));
+                if (isValidJavaInstall(installFolder, params)) {
+                    return installFolder;
+                }
+                return installFromSharedCaches(params, installFolder)
+                        .orElseThrow(() -> notAvailableLocally(params, installFolder));
+            }
+            return installRelease(params, installParentFolder, lockedRelease.get());
+        }
+        if (params.isOffline()) {
+            throw new NotAvailableLocallyException(String.format("No release locked in %s for %s %s os %s arch %s, it can't be resolved in offline mode",
+                    params.getLockFile(), params.getImageType(), JavaLockFile.Key.of(params).getRequestedVersion(), params.getOs(), params.getArch()));
+        }
+        return installRelease(params, installParentFolder, resolveAndLock(params));
+    }
+
+    /**
+     * Resolves the release for the params through the API and writes it to their lock file, replacing the release locked so far.
+     */
+    public ReleaseInfo updateLock(InstallJavaParams params) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        requireNonNull(params.getLockFile(), "A lock file must be provided");
+        if (params.isOffline()) {
+            throw new NotAvailableLocallyException("The lock file " + params.getLockFile() + " can't be updated in offline mode");
+        }
+        prepareInstallParentFolder(params);
+        return resolveAndLock(params);
+    }
+
+    private ReleaseInfo resolveAndLock(InstallJavaParams params) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        final ReleaseInfo releaseInfo = resolveReleaseInfo(params);
+        synchronized (lockFileMonitor) {
+            final JavaLockFile lockFile = JavaLockFile.read(params.getLockFile());
+            lockFile.put(JavaLockFile.Key.of(params), releaseInfo);
+            lockFile.write(params.getLockFile());
+        }
+        log.info("Java release is {}, locked in {}", releaseInfo, params.getLockFile());
+        return releaseInfo;
+    }
+
+    private ReleaseInfo resolveReleaseInfo(InstallJavaParams params) throws IOException, InterruptedException, URISyntaxException, HttpStatusException {
+        return (params.getFullJavaReleaseName() != null) ?
+                adoptOpenJdkApi.getJavaReleaseInfo(params.getFullJavaReleaseName(), params.getArch(), params.getOs(), params.getImageType()) :
+                adoptOpenJdkApi.getLatestJavaRelaseInfo(params.getJavaVersion(), params.getArch(), params.getOs(), params.getImageType());
+    }
+
+    /**
+     * Validates the params, sets the java version from the release name if any, and returns the folder holding the installs for these params.
+     */
+    private Path prepareInstallParentFolder(InstallJavaParams params) throws IOException {
         if (params.getJavaVersion() == null && params.getFullJavaReleaseName() == null) {
             throw new IllegalArgumentException("Either java version (eg. 16) or full java release name (eg. 16.0.1+9) must be provided");
         }
@@ -89,56 +824,118 @@ public class JavaDownloader {
             params.setJavaVersion(Integer.parseInt(matcher.group(1)));
         }
 
-        final Path installRootFolder = params.getJavaDownloaderDir().resolve(params.getImageType().getValue());
-        fileSystemHandler.mkdir(installRootFolder);
-        final Path installParentFolder = installRootFolder.resolve(String.valueOf(params.getJavaVersion()))
-                .resolve(osArchString(params.getOs(), params.getArch()));
-
-        Optional<Path> installPathOpt = tryFindJavaLocally(params, installParentFolder);
-        if (installPathOpt.isPresent()) {
-            return installPathOpt.get();
-        }
+        fileSystemHandler.mkdir(params.getJavaDownloaderDir().resolve(params.getImageType().getValue()));
+        return installParentFolder(params.getJavaDownloaderDir(), params);
+    }
 
-        final ReleaseInfo releaseInfo = (params.getFullJavaReleaseName() != null) ?
-                adoptOpenJdkApi.getJavaReleaseInfo(params.getFullJavaReleaseName(), params.getArch(), params.getOs(), params.getImageType()) :
-                adoptOpenJdkApi.getLatestJavaRelaseInfo(params.getJavaVersion(), params.getArch(), params.getOs(), params.getImageType());
+    private static Path installParentFolder(Path javaDownloaderDir, InstallJavaParams params) {
+        return javaDownloaderDir.resolve(params.getImageType().getValue())
+                .resolve(String.valueOf(params.getJavaVersion()))
+                .resolve(osArchString(params.getOs(), params.getArch()));
+    }
 
-        log.info("Java release is {}", releaseInfo);
-        final Path installFolder = installParentFolder.resolve(createInstallName(params.getOs(), params.getArch(), releaseInfo));
+    /**
+     * Downloads, checks and extracts a resolved release, unless it is already installed.
+     */
+    private Path installRelease(InstallJavaParams params, Path installParentFolder, ReleaseInfo releaseInfo) throws IOException, HttpStatusException {
+        final Path installFolder = installParentFolder.resolve(createInstallName(params.getOs(), params.getArch(), releaseInfo, params.getExtractionFilter()));
 
-        if (params.isDownloadLatest() && isValidJavaInstall(installFolder, params.getOs())) {
+        if (isValidJavaInstall(installFolder, params)) {
             log.info("Latest {} is already installed for java {} os {} arch {} : {}",
                     params.getImageType(), params.getJavaVersion(), params.getOs(), params.getArch(), installFolder);
             return installFolder;
         }
+        final Optional<Path> sharedInstall = installFromSharedCaches(params, installFolder);
+        if (sharedInstall.isPresent()) {
+            return sharedInstall.get();
+        }
 
+        final Path installRootFolder = params.getJavaDownloaderDir().resolve(params.getImageType().getValue());
         final Path downloadsFolder = installRootFolder.resolve("downloads");
         fileSystemHandler.mkdir(downloadsFolder);
         final Path archivePath = downloadsFolder.resolve(releaseInfo.getPackageName());
-        final Path tmpExtractFolder = installFolder.getParent().resolve(installFolder.getFileName().toString() + "_temporary");
 
         try {
             log.info("Downloading {} {} os {} arch {} ...", params.getImageType(), releaseInfo.getReleaseName(), params.getOs(), params.getArch());
-            downloadJava(releaseInfo, archivePath);
+            downloadJava(releaseInfo, archivePath, params.isPipelinedDownload());
+            installArchive(params, installFolder, releaseInfo, archivePath);
+        } finally {
+            fileSystemHandler.deleteFile(archivePath);
+        }
+
+        return installFolder;
+    }
 
+    /**
+     * Checks and extracts an archive of the release to the install folder, the archive is left untouched.
+     */
+    private void installArchive(InstallJavaParams params, Path installFolder, ReleaseInfo releaseInfo, Path archivePath) throws IOException {
+        final Path tmpExtractFolder = siblingFolder(installFolder, "_temporary");
+
+        try (FileSyncer fileSyncer = new FileSyncer(params.getDurability())) {
             checkSha256Hash(releaseInfo, archivePath);
             log.info("Checksum is valid for {} {} os {} arch {}", params.getImageType(), releaseInfo.getReleaseName(), params.getOs(), params.getArch());
 
             log.info("Extracting compressed archive for {} {} os {} arch {}", params.getImageType(), releaseInfo.getReleaseName(), params.getOs(), params.getArch());
-            extractArchive(archivePath, tmpExtractFolder, params.getImageType());
+            extractArchive(archivePath, tmpExtractFolder, params, fileSyncer);
+            final List<String> cdsArchives = generateCdsArchives(params, tmpExtractFolder);
+            for (String cdsArchive : cdsArchives) {
+                fileSyncer.written(tmpExtractFolder.resolve(cdsArchive));
+            }
+            installMetadataFile.write(tmpExtractFolder, InstallMetadata.builder()
+                    .releaseName(releaseInfo.getReleaseName())
+                    .timestamp(releaseInfo.getTimestamp())
+                    .os(params.getOs())
+                    .arch(params.getArch())
+                    .imageType(params.getImageType())
+                    .checksum(releaseInfo.getChecksum())
+                    .extractionFilter(params.getExtractionFilter())
+                    .cdsArchives(cdsArchives)
+                    .tarMetadataPreserved(params.isPreserveTarMetadata()) // zip archives have none to lose
+                    .build());
+            installManifest.write(tmpExtractFolder);
+            fileSyncer.written(tmpExtractFolder.resolve(InstallMetadataFile.METADATA_FILE_NAME));
+            fileSyncer.written(tmpExtractFolder.resolve(InstallManifest.MANIFEST_FILE_NAME));
 
-            putToFinalDestination(installFolder, tmpExtractFolder);
+            putToFinalDestination(installFolder, tmpExtractFolder, params, fileSyncer);
 
             log.info("Installation done for {} {} os {} arch {}", params.getImageType(), releaseInfo.getReleaseName(), params.getOs(), params.getArch());
-        } finally {
-            fileSystemHandler.deleteFile(archivePath);
+        } catch (Exception ex) {
+            if (fileSystemHandler.fileOrFolderExists(tmpExtractFolder)) {
+                fileSystemHandler.deleteRecursively(tmpExtractFolder);
+            }
+            throw ex;
         }
+    }
 
-        return installFolder;
+    /**
+     * Archives are dumped before the manifest is written, so they are part of it.
+     */
+    private List<String> generateCdsArchives(InstallJavaParams params, Path extractFolder) throws IOException {
+        if (!params.isGenerateCdsArchive()) {
+            return Collections.emptyList();
+        }
+        if (!Utils.isHostPlatform(params.getOs(), params.getArch())) {
+            log.info("Skipping CDS archive generation, {} os {} arch {} can't run on this machine", params.getImageType(), params.getOs(), params.getArch());
+            return Collections.emptyList();
+        }
+        final Path javaHome = findJavaHomeFolder(extractFolder, params.getOs())
+                .orElseThrow(() -> new IOException("No java home found in " + extractFolder));
+        try {
+            return cdsArchiveGenerator.generate(extractFolder, javaHome, params.getOs(), params.getCdsClassList());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while dumping CDS archives of " + javaHome);
+        }
     }
 
-    private static String createInstallName(String os, String arch, ReleaseInfo releaseInfo) {
+    /**
+     * Installs extracted with a filter get a distinct name, eg. jdk-16.0.1+9~0123456789ab--2021-04-23T09-10-06Z--linux_x64,
+     * so that they never replace or get mistaken for a full install.
+     */
+    private static String createInstallName(String os, String arch, ReleaseInfo releaseInfo, ExtractionFilter extractionFilter) {
         return releaseInfo.getReleaseName()
+                + (extractionFilter.isEmpty() ? "" : FILTERED_INSTALL_MARKER + extractionFilter.fingerprint())
                 + SEPARATOR_IN_FILENAMES
                 + releaseInfo.getTimestamp().replace(":", "-")
                 + SEPARATOR_IN_FILENAMES
@@ -150,35 +947,86 @@ public class JavaDownloader {
     }
 
     private Optional<Path> tryFindJavaLocally(InstallJavaParams params, Path parentFolder) throws IOException {
-
         if (params.getFullJavaReleaseName() == null && params.isDownloadLatest()) {
             return Optional.empty();
         }
+        return findLatestInstall(params, parentFolder);
+    }
+
+    /**
+     * @return the latest valid install matching the params in the javaDownloaderDir, else in the first shared cache having one, copied locally.
+     */
+    private Optional<Path> findLatestInstall(InstallJavaParams params, Path parentFolder) throws IOException {
+        final Optional<Path> localInstall = findLatestLocalInstall(params, parentFolder);
+        if (localInstall.isPresent()) {
+            return localInstall;
+        }
+        for (Path sharedCacheDir : params.getSharedCacheDirs()) {
+            final Optional<Path> sharedInstall = findLatestLocalInstall(params, installParentFolder(sharedCacheDir, params));
+            if (sharedInstall.isPresent()) {
+                return Optional.of(copyFromSharedCache(params, sharedInstall.get(), parentFolder.resolve(sharedInstall.get().getFileName())));
+            }
+        }
+        return Optional.empty();
+    }
 
+    /**
+     * Copies the given install from the first shared cache having it, if any.
+     */
+    private Optional<Path> installFromSharedCaches(InstallJavaParams params, Path installFolder) throws IOException {
+        for (Path sharedCacheDir : params.getSharedCacheDirs()) {
+            final Path sharedInstall = installParentFolder(sharedCacheDir, params).resolve(installFolder.getFileName());
+            if (isValidJavaInstall(sharedInstall, params)) {
+                return Optional.of(copyFromSharedCache(params, sharedInstall, installFolder));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Files are hard-linked when the shared cache is on the same file store, copied in parallel otherwise (eg. from a network volume).
+     * The copy is made in a work folder then renamed atomically, like an extraction.
+     */
+    private Path copyFromSharedCache(InstallJavaParams params, Path sharedInstall, Path installFolder) throws IOException {
+        final Path tmpCopyFolder = siblingFolder(installFolder, "_temporary");
+        try (FileSyncer fileSyncer = new FileSyncer(params.getDurability())) {
+            final long start = System.nanoTime();
+            fileSystemHandler.linkOrCopyTree(sharedInstall, tmpCopyFolder, SHARED_CACHE_COPY_PARALLELISM);
+            fileSyncer.writtenTree(tmpCopyFolder);
+            putToFinalDestination(installFolder, tmpCopyFolder, params, fileSyncer);
+            log.info("Copied {} from shared cache {} in {} ms", installFolder.getFileName(), sharedInstall, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (Exception ex) {
+            if (fileSystemHandler.fileOrFolderExists(tmpCopyFolder)) {
+                fileSystemHandler.deleteRecursively(tmpCopyFolder);
+            }
+            throw ex;
+        }
+        return installFolder;
+    }
+
+    /**
+     * @return the latest valid install matching the params, whatever the 'downloadLatest' flag.
+     */
+    private Optional<Path> findLatestLocalInstall(InstallJavaParams params, Path parentFolder) throws IOException {
         if (!fileSystemHandler.fileOrFolderExists(parentFolder)) {
             return Optional.empty();
         }
 
         final String osArchString = osArchString(params.getOs(), params.getArch());
+        final ExtractionFilter extractionFilter = params.getExtractionFilter();
 
         try (Stream<Path> fileStream = fileSystemHandler.listFolderAsStream(parentFolder)) {
             final Optional<Path> latestFolder = fileStream
                     .filter(path -> {
                         final String fileName = path.getFileName().toString();
-                        if (params.getFullJavaReleaseName() != null) {
-                            return fileName.startsWith(params.getFullJavaReleaseName()) && fileName.endsWith(SEPARATOR_IN_FILENAMES + osArchString);
-                        } else {
-                            return fileName.endsWith(SEPARATOR_IN_FILENAMES + osArchString);
+                        if (!fileName.endsWith(SEPARATOR_IN_FILENAMES + osArchString)) {
+                            return false;
                         }
+                        return params.getFullJavaReleaseName() == null || params.getFullJavaReleaseName().equals(releaseNameOf(fileName));
                     })
-                    .max(Comparator.comparing(p -> {
-                        final String fileName = p.getFileName().toString();
-                        final String date = fileName.substring(
-                                fileName.indexOf(SEPARATOR_IN_FILENAMES) + SEPARATOR_IN_FILENAMES.length(),
-                                fileName.lastIndexOf(SEPARATOR_IN_FILENAMES));
-                        return ZonedDateTime.parse(date, TIMESTAMP_FORMATTER);
-                    }));
-            if (latestFolder.isPresent() && isValidJavaInstall(latestFolder.get(), params.getOs())) {
+                    .filter(path -> hasExtractionFilter(path, extractionFilter))
+                    .max(BY_RELEASE_VERSION);
+            if (latestFolder.isPresent() && isValidJavaInstall(latestFolder.get(), params)) {
                 log.info("Found existing {} for java {} os {} arch {} : {}",
                         params.getImageType(), params.getJavaVersion(), params.getOs(), params.getArch(), latestFolder.get());
                 return latestFolder;
@@ -188,41 +1036,101 @@ public class JavaDownloader {
         }
     }
 
-    private void putToFinalDestination(Path installFolder, Path tmpExtractFolder) throws IOException {
+    private static NotAvailableLocallyException notAvailableLocally(InstallJavaParams params, Path searchedFolder) {
+        return new NotAvailableLocallyException(String.format("%s %s os %s arch %s is not available locally in %s, and offline mode is enabled",
+                params.getImageType(),
+                params.getFullJavaReleaseName() != null ? params.getFullJavaReleaseName() : params.getJavaVersion(),
+                params.getOs(), params.getArch(), searchedFolder));
+    }
+
+    /**
+     * Install folders are named release--timestamp--os_arch in their os_arch folder, unlike work folders and bookkeeping files.
+     */
+    private static boolean isInstallFolder(Path path) {
+        return Files.isDirectory(path)
+                && path.getFileName().toString().endsWith(SEPARATOR_IN_FILENAMES + path.getParent().getFileName().toString());
+    }
+
+    /**
+     * @param installName install folder name, eg. jdk-16.0.1+9~0123456789ab--2021-04-23T09-10-06Z--linux_x64
+     * @return the release name part, eg. jdk-16.0.1+9
+     */
+    private static String releaseNameOf(String installName) {
+        final int separatorIndex = installName.indexOf(SEPARATOR_IN_FILENAMES);
+        final String releaseName = separatorIndex < 0 ? installName : installName.substring(0, separatorIndex);
+        final int filterMarkerIndex = releaseName.indexOf(FILTERED_INSTALL_MARKER);
+        return filterMarkerIndex < 0 ? releaseName : releaseName.substring(0, filterMarkerIndex);
+    }
+
+    /**
+     * @return the extraction filter part of an install folder name, eg. ~0123456789ab, empty for full installs
+     */
+    private static String extractionFilterMarkerOf(String installName) {
+        final int separatorIndex = installName.indexOf(SEPARATOR_IN_FILENAMES);
+        final String releaseName = separatorIndex < 0 ? installName : installName.substring(0, separatorIndex);
+        final int filterMarkerIndex = releaseName.indexOf(FILTERED_INSTALL_MARKER);
+        return filterMarkerIndex < 0 ? "" : releaseName.substring(filterMarkerIndex);
+    }
+
+    /**
+     * A trimmed install is never handed out to a caller asking for a full one, and conversely.
+     */
+    private boolean hasExtractionFilter(Path installFolder, ExtractionFilter extractionFilter) {
         try {
-            if (fileSystemHandler.fileOrFolderExists(installFolder)) {
-                fileSystemHandler.deleteRecursively(installFolder);
-            }
+            return installMetadataFile.readExtractionFilter(installFolder).equals(extractionFilter);
+        } catch (IOException e) {
+            log.warn("Unreadable metadata for install {} : {}", installFolder, e.toString());
+            return false;
+        }
+    }
 
-            fileSystemHandler.mkdir(installFolder);
+    /**
+     * Makes the fully extracted tree visible with a single atomic rename, so that a crash never leaves a half-populated install.
+     * An existing install with the same name is first renamed aside, processes using it keep their open files.
+     * Files are flushed before the rename as the durability of the params requires.
+     */
+    private void putToFinalDestination(Path installFolder, Path tmpExtractFolder, InstallJavaParams params, FileSyncer fileSyncer) throws IOException {
+        fileSyncer.commit(tmpExtractFolder);
+        if (!fileSystemHandler.fileOrFolderExists(installFolder)) {
+            fileSystemHandler.moveAtomically(tmpExtractFolder, installFolder);
+            fileSyncer.committed(installFolder);
+            return;
+        }
 
-            try (Stream<Path> files = fileSystemHandler.listFolderAsStream(tmpExtractFolder)) {
-                files.forEach(file -> {
-                    try {
-                        fileSystemHandler.move(file, installFolder.resolve(file.getFileName()));
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-            }
-        } catch (Exception ex) {
-            fileSystemHandler.deleteRecursively(installFolder);
+        final Path replacedFolder = siblingFolder(installFolder, "_replaced");
+        fileSystemHandler.moveAtomically(installFolder, replacedFolder);
+        try {
+            fileSystemHandler.moveAtomically(tmpExtractFolder, installFolder);
+        } catch (IOException ex) {
+            fileSystemHandler.moveAtomically(replacedFolder, installFolder);
             throw ex;
-        } finally {
-            fileSystemHandler.deleteRecursively(tmpExtractFolder);
+        }
+        fileSyncer.committed(installFolder);
+        if (params.isDeferredCleanup()) {
+            trashCollector.trash(params.getJavaDownloaderDir(), replacedFolder);
+        } else {
+            fileSystemHandler.deleteRecursively(replacedFolder);
         }
     }
 
-    private void extractArchive(Path archivePath, Path destinationFolder, ImageType imageType) throws IOException {
+    /**
+     * Unique work folder next to the install folder, on the same file store so that it can be renamed atomically.
+     * Its name doesn't end with the os/arch suffix, so it is never picked up as an install.
+     */
+    private static Path siblingFolder(Path installFolder, String suffix) {
+        return installFolder.resolveSibling(installFolder.getFileName().toString() + suffix + "-" + UUID.randomUUID());
+    }
+
+    private void extractArchive(Path archivePath, Path destinationFolder, InstallJavaParams params, FileSyncer fileSyncer) throws IOException {
         final String fileName = archivePath.getFileName().toString();
         if (fileName.endsWith(".zip")) {
             log.info("Extracting .zip archive {} ...", archivePath);
-            archiveUnpacker.unZip(archivePath, destinationFolder);
+            getArchiveUnpacker().unZip(archivePath, destinationFolder, params.getExtractionFilter(), fileSyncer);
         } else if (fileName.endsWith(".tar.gz")) {
             log.info("Extracting .tar.gz archive {} ...", archivePath);
-            archiveUnpacker.unTarGz(archivePath, destinationFolder);
+            getArchiveUnpacker().unTarGz(archivePath, destinationFolder, params.getExtractionFilter(), fileSyncer, params.isPreserveTarMetadata());
         } else {
-            throw new IllegalStateException("Invalid " + imageType + " archive " + archivePath + " , extension must be either .zip or .tar.gz");
+            throw new IllegalStateException("Invalid " + params.getImageType() + " archive " + archivePath + " , extension must be either .zip or .tar.gz");
         }
     }
 
@@ -237,20 +1145,25 @@ public class JavaDownloader {
         }
     }
 
-    private void downloadJava(ReleaseInfo releaseInfo, Path archivePath) throws IOException, HttpStatusException {
+    private void downloadJava(ReleaseInfo releaseInfo, Path archivePath, boolean pipelined) throws IOException, HttpStatusException {
         final long start = System.nanoTime();
 
-        final InputStream packageInputStream = requireNonNull(httpRequester.httpGet(
+        final ResponseBody body = requireNonNull(httpRequester.httpGet(
                 releaseInfo.getPackageLink(),
                 Collections.emptyMap(),
-                Headers.of()).body()).byteStream();
+                Headers.of()).body());
 
         ProgressBarPrinter progressBar = new ProgressBarPrinter(
                 releaseInfo.getSize(),
                 "Downloading " + releaseInfo.getPackageName());
 
-        try (OutputStream outputStream = fileSystemHandler.outputStream(archivePath)) {
-            transferTo(packageInputStream, outputStream, 8192, progressBar::update);
+        try (BufferedSource source = body.source();
+             FileChannel outputChannel = fileSystemHandler.writeChannel(archivePath)) {
+            if (pipelined) {
+                downloadPipeline.transfer(source, outputChannel, progressBar::update);
+            } else {
+                transferTo(source, outputChannel, progressBar::update);
+            }
         }
 
         final long end = System.nanoTime();
@@ -276,15 +1189,60 @@ public class JavaDownloader {
     }
 
     private boolean isValidJavaInstall(Path javaInstallFolder, String os) throws IOException {
-        return findJavaHomeFolder(javaInstallFolder, os)
-                .map(path -> {
-                    final Path binFolder = path.resolve("bin");
-                    try {
-                        return fileSystemHandler.fileOrFolderExists(binFolder) &&
-                                fileSystemHandler.listFolder(binFolder).stream().anyMatch(f -> f.getFileName().toString().contains("java"));
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }).orElse(false);
+        final boolean validJavaHome = findJavaHomeFolder(javaInstallFolder, os)
+                .map(this::isValidJavaHome)
+                .orElse(false);
+        if (!validJavaHome) {
+            return false;
+        }
+        final Optional<InstallMetadata> metadata = installMetadataFile.read(javaInstallFolder);
+        return !metadata.isPresent() || cdsArchiveGenerator.exist(javaInstallFolder, metadata.get().getCdsArchives());
+    }
+
+    /**
+     * Installs made without the CDS archives or the tar metadata the params ask for are incomplete for them, they are installed again.
+     */
+    private boolean isValidJavaInstall(Path javaInstallFolder, InstallJavaParams params) throws IOException {
+        if (!isValidJavaInstall(javaInstallFolder, params.getOs())) {
+            return false;
+        }
+        final boolean cdsArchivesNeeded = params.isGenerateCdsArchive() && Utils.isHostPlatform(params.getOs(), params.getArch());
+        if (!cdsArchivesNeeded && !params.isPreserveTarMetadata()) {
+            return true;
+        }
+        final Optional<InstallMetadata> metadata = installMetadataFile.read(javaInstallFolder);
+        if (!metadata.isPresent()) {
+            log.info("{} has no metadata, it may lack CDS archives or tar metadata", javaInstallFolder);
+            return false;
+        }
+        if (cdsArchivesNeeded && !hasCdsArchives(metadata.get(), params.getCdsClassList() != null)) {
+            log.info("{} was installed without CDS archives", javaInstallFolder);
+            return false;
+        }
+        if (params.isPreserveTarMetadata() && !metadata.get().isTarMetadataPreserved()) {
+            log.info("{} was installed without preserving tar metadata", javaInstallFolder);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean hasCdsArchives(InstallMetadata metadata, boolean appArchiveNeeded) {
+        return !metadata.getCdsArchives().isEmpty()
+                && (!appArchiveNeeded || metadata.getCdsArchives().stream().anyMatch(archive -> archive.endsWith(CdsArchiveGenerator.APP_ARCHIVE_NAME)));
+    }
+
+    private boolean isValidJavaHome(Path javaHome) {
+        final Path binFolder = javaHome.resolve("bin");
+        try {
+            return fileSystemHandler.fileOrFolderExists(binFolder) &&
+                    fileSystemHandler.listFolder(binFolder).stream().anyMatch(f -> f.getFileName().toString().contains("java"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /* Snapshots are rarely exported or imported: commons-compress is only loaded by the first one */
+    private static final class InstallSnapshotHolder {
+        private static final InstallSnapshot INSTANCE = new InstallSnapshot();
     }
 }
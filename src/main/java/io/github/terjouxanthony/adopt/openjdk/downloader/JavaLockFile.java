@@ -0,0 +1,117 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseInfo;
+import lombok.Data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static io.github.terjouxanthony.adopt.openjdk.downloader.Utils.MAPPER;
+
+/**
+ * File pinning the resolved release of each (image type, os, arch, requested version), meant to be checked in.
+ * Installs made with a lock file read the full release information from it, so no API request is needed.
+ */
+public class JavaLockFile {
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::getImageType)
+            .thenComparing(Key::getOs)
+            .thenComparing(Key::getArch)
+            .thenComparing(Key::getRequestedVersion);
+
+    private final Map<Key, ReleaseInfo> entries = new TreeMap<>(KEY_ORDER);
+
+    /**
+     * @return the content of the lock file, empty if it doesn't exist yet.
+     */
+    public static JavaLockFile read(Path path) throws IOException {
+        final JavaLockFile lockFile = new JavaLockFile();
+        if (!Files.exists(path)) {
+            return lockFile;
+        }
+        final JsonNode root = MAPPER.readTree(path.toFile());
+        for (JsonNode entry : root.path("releases")) {
+            final Key key = new Key(
+                    entry.path("imageType").textValue(),
+                    entry.path("os").textValue(),
+                    entry.path("arch").textValue(),
+                    entry.path("requestedVersion").textValue());
+            lockFile.entries.put(key, new ReleaseInfo(
+                    entry.path("checksum").textValue(),
+                    entry.path("packageName").textValue(),
+                    entry.path("packageLink").textValue(),
+                    entry.path("releaseName").textValue(),
+                    entry.path("size").longValue(),
+                    entry.path("timestamp").textValue()));
+        }
+        return lockFile;
+    }
+
+    /**
+     * Writes the lock file atomically, entries are sorted to keep diffs readable.
+     */
+    public void write(Path path) throws IOException {
+        final ObjectNode root = MAPPER.createObjectNode();
+        final ArrayNode releases = root.putArray("releases");
+        entries.forEach((key, releaseInfo) -> releases.addObject()
+                .put("imageType", key.getImageType())
+                .put("os", key.getOs())
+                .put("arch", key.getArch())
+                .put("requestedVersion", key.getRequestedVersion())
+                .put("releaseName", releaseInfo.getReleaseName())
+                .put("timestamp", releaseInfo.getTimestamp())
+                .put("packageName", releaseInfo.getPackageName())
+                .put("packageLink", releaseInfo.getPackageLink())
+                .put("checksum", releaseInfo.getChecksum())
+                .put("size", releaseInfo.getSize()));
+
+        final Path absolutePath = path.toAbsolutePath();
+        Files.createDirectories(absolutePath.getParent());
+        final Path tmpFile = absolutePath.resolveSibling(absolutePath.getFileName().toString() + ".tmp");
+        Files.write(tmpFile, MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(root));
+        Files.move(tmpFile, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Optional<ReleaseInfo> get(Key key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    public void put(Key key, ReleaseInfo releaseInfo) {
+        entries.put(key, releaseInfo);
+    }
+
+    /**
+     * @return the locked releases, sorted by image type, os, arch and requested version
+     */
+    public Map<Key, ReleaseInfo> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    @Data
+    public static class Key {
+        private final String imageType;
+        private final String os;
+        private final String arch;
+        private final String requestedVersion; // the full release name if one was requested, else the java version
+
+        public static Key of(InstallJavaParams params) {
+            return of(params.getImageType(), params.getOs(), params.getArch(),
+                    params.getFullJavaReleaseName() != null ? params.getFullJavaReleaseName() : String.valueOf(params.getJavaVersion()));
+        }
+
+        public static Key of(ImageType imageType, String os, String arch, String requestedVersion) {
+            return new Key(imageType.getValue(), os, arch, requestedVersion);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Version of a java release name, ordered like the releases themselves.
+ * <p>
+ * Supported release names:
+ * <ul>
+ *     <li>java 9+: jdk-16.0.1+9, jdk-16+36, jdk-15.0.1+9.1 (rebuild), jdk-11.0.9.1+1, jdk-17+20-ea</li>
+ *     <li>java 8: jdk8u292-b10, jdk8u272-b10.1, which are numbered 8.0.292 build 10</li>
+ *     <li>either followed by a variant, eg. jdk-16+36_openj9-0.25.0</li>
+ * </ul>
+ * Versions are ordered by version numbers (missing numbers count as 0), build, rebuild, early access (before GA), then variant (no variant first).
+ */
+@Getter
+@EqualsAndHashCode(of = {"numbers", "build", "rebuild", "earlyAccess", "variant"})
+public class JavaReleaseVersion implements Comparable<JavaReleaseVersion> {
+    private static final Pattern MODERN_RELEASE_NAME = Pattern.compile(
+            "^jdk-(\\d+(?:\\.\\d+)*)(?:\\+(\\d+)(?:\\.(\\d+))?)?(-ea)?(?:_(.+))?$");
+    private static final Pattern JAVA_8_RELEASE_NAME = Pattern.compile(
+            "^jdk(\\d+)u(\\d+)(?:-b(\\d+)(?:\\.(\\d+))?)?(-ea)?(?:_(.+))?$");
+
+    private final String releaseName;
+    private final List<Integer> numbers;
+    private final Integer build; // null if unknown, eg. in a version range bound
+    private final int rebuild;
+    private final boolean earlyAccess;
+    private final String variant; // empty for hotspot releases
+
+    JavaReleaseVersion(String releaseName, List<Integer> numbers, Integer build, int rebuild, boolean earlyAccess, String variant) {
+        this.releaseName = releaseName;
+        this.numbers = Collections.unmodifiableList(trimTrailingZeros(numbers));
+        this.build = build;
+        this.rebuild = rebuild;
+        this.earlyAccess = earlyAccess;
+        this.variant = variant == null ? "" : variant;
+    }
+
+    public static Optional<JavaReleaseVersion> parse(String releaseName) {
+        final Matcher modern = MODERN_RELEASE_NAME.matcher(releaseName);
+        if (modern.matches()) {
+            return Optional.of(new JavaReleaseVersion(
+                    releaseName,
+                    parseNumbers(modern.group(1)),
+                    modern.group(2) == null ? null : Integer.parseInt(modern.group(2)),
+                    modern.group(3) == null ? 0 : Integer.parseInt(modern.group(3)),
+                    modern.group(4) != null,
+                    modern.group(5)));
+        }
+        final Matcher java8 = JAVA_8_RELEASE_NAME.matcher(releaseName);
+        if (java8.matches()) {
+            final List<Integer> numbers = new ArrayList<>();
+            numbers.add(Integer.parseInt(java8.group(1)));
+            numbers.add(0);
+            numbers.add(Integer.parseInt(java8.group(2)));
+            return Optional.of(new JavaReleaseVersion(
+                    releaseName,
+                    numbers,
+                    java8.group(3) == null ? null : Integer.parseInt(java8.group(3)),
+                    java8.group(4) == null ? 0 : Integer.parseInt(java8.group(4)),
+                    java8.group(5) != null,
+                    java8.group(6)));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Parses a plain version as found in version ranges, eg. 11, 11.0.4, 11.0.4+11 or 11.0.4+11.1
+     */
+    static JavaReleaseVersion parsePlainVersion(String version) {
+        final Optional<JavaReleaseVersion> parsed = parse("jdk-" + version.trim());
+        if (!parsed.isPresent()) {
+            throw new IllegalArgumentException("Invalid java version: " + version);
+        }
+        return parsed.get();
+    }
+
+    public int getFeatureVersion() {
+        return numbers.isEmpty() ? 0 : numbers.get(0);
+    }
+
+    public boolean hasVariant() {
+        return !variant.isEmpty();
+    }
+
+    @Override
+    public int compareTo(JavaReleaseVersion other) {
+        int result = compareNumbers(other);
+        if (result != 0) {
+            return result;
+        }
+        result = Integer.compare(build == null ? -1 : build, other.build == null ? -1 : other.build);
+        if (result != 0) {
+            return result;
+        }
+        result = Integer.compare(rebuild, other.rebuild);
+        if (result != 0) {
+            return result;
+        }
+        result = Boolean.compare(!earlyAccess, !other.earlyAccess);
+        if (result != 0) {
+            return result;
+        }
+        return variant.compareTo(other.variant);
+    }
+
+    /**
+     * Compares only the version numbers, eg. 11.0.4 in 11.0.4+11.
+     */
+    int compareNumbers(JavaReleaseVersion other) {
+        final int size = Math.max(numbers.size(), other.numbers.size());
+        for (int i = 0; i < size; i++) {
+            final int result = Integer.compare(numberAt(i), other.numberAt(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private int numberAt(int index) {
+        return index < numbers.size() ? numbers.get(index) : 0;
+    }
+
+    private static List<Integer> parseNumbers(String dotSeparated) {
+        final List<Integer> numbers = new ArrayList<>();
+        for (String number : dotSeparated.split("\\.")) {
+            numbers.add(Integer.parseInt(number));
+        }
+        return numbers;
+    }
+
+    private static List<Integer> trimTrailingZeros(List<Integer> numbers) {
+        final List<Integer> trimmed = new ArrayList<>(numbers);
+        while (trimmed.size() > 1 && trimmed.get(trimmed.size() - 1) == 0) {
+            trimmed.remove(trimmed.size() - 1);
+        }
+        return trimmed;
+    }
+
+    @Override
+    public String toString() {
+        return releaseName;
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tar extraction keeping what the JDK archives rely on: symbolic links and hard links are recreated as links without copying any bytes,
+ * and the POSIX permissions of the entries are applied once every entry is extracted, eg. the exec bit of bin/java.
+ * <p>
+ * Links must not let an entry escape the target folder: link targets must stay inside it, and every entry is written in a folder
+ * whose real path, symbolic links resolved, is inside it.
+ */
+@Slf4j
+class MetadataPreservingTarExtractor {
+    private static final int PERMISSION_BITS = 0777;
+
+    private final Path target;
+    private final ExtractionFilter filter;
+    private final FileSyncer fileSyncer;
+    private final Map<Path, Integer> modes = new LinkedHashMap<>();
+    private final Set<Path> checkedFolders = new HashSet<>();
+    private Path realTarget;
+
+    MetadataPreservingTarExtractor(Path target, ExtractionFilter filter, FileSyncer fileSyncer) {
+        this.target = target.toAbsolutePath().normalize();
+        this.filter = filter;
+        this.fileSyncer = fileSyncer;
+    }
+
+    void extract(TarArchiveInputStream ti) throws IOException {
+        Files.createDirectories(target);
+        realTarget = target.toRealPath();
+
+        TarArchiveEntry entry;
+        int links = 0;
+        while ((entry = ti.getNextTarEntry()) != null) {
+            if (!filter.accept(entry.getName())) {
+                continue;
+            }
+            final Path path = checkInside(target.resolve(entry.getName()), entry.getName());
+            if (entry.isDirectory()) {
+                createFolders(path, entry.getName());
+                modes.put(path, entry.getMode());
+                continue;
+            }
+            createFolders(path.getParent(), entry.getName());
+
+            if (entry.isSymbolicLink()) {
+                checkInside(path.getParent().resolve(entry.getLinkName()), entry.getName());
+                replace(path);
+                checkedFolders.removeIf(folder -> folder.startsWith(path)); // a replaced folder must be checked again
+                Files.createSymbolicLink(path, path.getFileSystem().getPath(entry.getLinkName()));
+                links++;
+            } else if (entry.isLink()) {
+                createHardLink(path, entry);
+                links++;
+            } else {
+                Files.copy(ti, path, StandardCopyOption.REPLACE_EXISTING);
+                fileSyncer.written(path);
+                modes.put(path, entry.getMode());
+            }
+        }
+        applyPermissions();
+        log.debug("Extracted {} with {} links and {} permissions", target, links, modes.size());
+    }
+
+    /**
+     * Hard link names are relative to the root of the archive. The linked file must already be extracted, eg. not excluded by the filter.
+     */
+    private void createHardLink(Path path, TarArchiveEntry entry) throws IOException {
+        final Path linked = checkInside(target.resolve(entry.getLinkName()), entry.getName());
+        if (!Files.isRegularFile(linked, LinkOption.NOFOLLOW_LINKS) || !linked.toRealPath().startsWith(realTarget)) {
+            throw new IOException("Bad entry: " + entry.getName() + " is a hard link to " + entry.getLinkName() + " which isn't extracted");
+        }
+        replace(path);
+        try {
+            Files.createLink(path, linked);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("Impossible to hard-link {}, copying it: {}", path, e.toString());
+            Files.copy(linked, path);
+            fileSyncer.written(path);
+        }
+    }
+
+    private void replace(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        modes.remove(path);
+    }
+
+    /**
+     * Files first then folders, deepest first, so that read-only folders are made so once their content is written.
+     */
+    private void applyPermissions() throws IOException {
+        if (Files.getFileAttributeView(target, PosixFileAttributeView.class) == null) {
+            return;
+        }
+        final List<Map.Entry<Path, Integer>> folders = new ArrayList<>();
+        for (Map.Entry<Path, Integer> mode : modes.entrySet()) {
+            if (Files.isDirectory(mode.getKey(), LinkOption.NOFOLLOW_LINKS)) {
+                folders.add(mode);
+            } else {
+                setPermissions(mode.getKey(), mode.getValue());
+            }
+        }
+        folders.sort(Comparator.comparing((Map.Entry<Path, Integer> folder) -> folder.getKey().getNameCount()).reversed());
+        for (Map.Entry<Path, Integer> folder : folders) {
+            setPermissions(folder.getKey(), folder.getValue());
+        }
+    }
+
+    private static void setPermissions(Path path, int mode) throws IOException {
+        Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS).setPermissions(toPermissions(mode & PERMISSION_BITS));
+    }
+
+    private Path checkInside(Path path, String entryName) throws IOException {
+        final Path normalized = path.normalize();
+        if (!normalized.startsWith(target)) {
+            throw new IOException("Bad entry: " + entryName);
+        }
+        return normalized;
+    }
+
+    /**
+     * Catches folders reached through a symbolic link pointing outside, eg. "a" -> "..", then an entry "a/b".
+     * The deepest existing folder is checked before creating the missing ones, so nothing is ever created outside.
+     */
+    private void createFolders(Path folder, String entryName) throws IOException {
+        if (checkedFolders.contains(folder)) {
+            return;
+        }
+        Path existing = folder;
+        while (!Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        checkRealPath(existing, entryName);
+        Files.createDirectories(folder);
+        checkRealPath(folder, entryName);
+        checkedFolders.add(folder);
+    }
+
+    private void checkRealPath(Path folder, String entryName) throws IOException {
+        if (!folder.toRealPath().startsWith(realTarget)) {
+            throw new IOException("Bad entry: " + entryName);
+        }
+    }
+
+    private static Set<PosixFilePermission> toPermissions(int mode) {
+        final Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (PosixFilePermission permission : PosixFilePermission.values()) {
+            if ((mode & (1 << (8 - permission.ordinal()))) != 0) {
+                permissions.add(permission);
+            }
+        }
+        return permissions;
+    }
+}
@@ -6,11 +6,16 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
+import org.apache.commons.codec.digest.DigestUtils;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 public class Model {
     public static List<String> osList = Arrays.asList(
@@ -70,9 +75,12 @@ public class Model {
     public static class ListReleasesRequest {
         private final int featureVersion;
         private final ReleaseType releaseType;
-        private final String architecture;
+        @Nullable
+        private final String architecture; /* null to get the binaries of all architectures */
+        @Nullable
         private final ImageType imageType;
         private final JvmImpl jvmImpl;
+        @Nullable
         private final String os;
         private final Vendor vendor;
     }
@@ -80,9 +88,12 @@ public class Model {
     @Data
     public static class ReleaseInfoRequest {
         private final String releaseName;
-        private final String architecture;
+        @Nullable
+        private final String architecture; /* null to get the binaries of all architectures */
+        @Nullable
         private final ImageType imageType;
         private final JvmImpl jvmImpl;
+        @Nullable
         private final String os;
         private final Vendor vendor;
     }
@@ -111,6 +122,127 @@ public class Model {
     @interface Nullable {
     }
 
+    @Data
+    public static class Platform {
+        @NonNull
+        private final String os;
+        @NonNull
+        private final String arch;
+        @NonNull
+        private final ImageType imageType;
+    }
+
+    @Data
+    public static class ReleaseBinaries {
+        private final String releaseName;
+        private final String timestamp;
+        private final Map<Platform, ReleaseInfo> binaries;
+    }
+
+    @Data
+    @Builder
+    public static class MatrixInstallParams {
+        @NonNull
+        private final List<Platform> platforms;
+        private final Integer javaVersion;
+        private final String fullJavaReleaseName; /* takes precedence over javaVersion */
+        @Builder.Default
+        private final boolean downloadLatest = true;
+        @Builder.Default
+        private final boolean cleanExistingSameMajorVersion = true;
+        @Builder.Default
+        private final int parallelism = 4; /* maximum number of concurrent downloads and extractions */
+        @Builder.Default
+        private final boolean offline = InstallJavaParams.isOfflineByDefault(); /* see InstallJavaParams#offline */
+        @NonNull
+        @Builder.Default
+        private final Path javaDownloaderDir = InstallJavaParams.defaultJavaDownloaderDir();
+        @NonNull
+        @Builder.Default
+        private final List<Path> sharedCacheDirs = Collections.emptyList(); /* see InstallJavaParams#sharedCacheDirs */
+        @NonNull
+        @Builder.Default
+        private final Durability durability = Durability.NONE; /* see InstallJavaParams#durability */
+        @Builder.Default
+        private final boolean preserveTarMetadata = false; /* see InstallJavaParams#preserveTarMetadata */
+    }
+
+    @Data
+    @Builder
+    public static class JlinkParams {
+        @NonNull
+        private final InstallJavaParams jdkParams; /* a JDK for this machine, its jlink and jmods make the runtime */
+        @NonNull
+        private final List<String> modules; /* eg. java.base, java.logging, java.sql */
+        @NonNull
+        @Builder.Default
+        private final String compress = "2"; /* jlink --compress value, eg. 2 up to JDK 20, zip-6 from JDK 21 */
+        @Builder.Default
+        private final boolean stripDebug = true;
+        @NonNull
+        @Builder.Default
+        private final List<String> extraOptions = Collections.emptyList(); /* other jlink options, eg. --bind-services */
+
+        /**
+         * @return a short stable identifier of the modules and options, the order of modules doesn't matter.
+         */
+        public String fingerprint() {
+            return DigestUtils.sha256Hex("modules:" + String.join(",", new TreeSet<>(modules))
+                    + ";compress:" + compress + ";stripDebug:" + stripDebug
+                    + ";options:" + String.join(" ", extraOptions)).substring(0, 12);
+        }
+    }
+
+    @Data
+    @Builder
+    public static class RetentionPolicy {
+        private final Long maxTotalSizeBytes; /* size budget of all the installs, least recently used ones are evicted first, null for no budget */
+        private final Duration maxIdleTime; /* installs unused for longer are evicted, null to keep them */
+        @NonNull
+        @Builder.Default
+        private final List<Path> lockFiles = Collections.emptyList(); /* releases locked in these files are never evicted */
+    }
+
+    /**
+     * How extracted files are flushed to the disk before an install is made visible.
+     */
+    public enum Durability {
+        NONE, // no flush, the fastest: for ephemeral machines, eg. CI containers, a crash may leave an install with truncated files
+        BATCHED, // files flushed in groups from a background thread while extracting, directories flushed before the rename
+        STRICT // each file flushed as soon as it is written, then directories before the rename
+    }
+
+    public enum VerificationMode {
+        FULL, // compares the size and SHA-256 hash of every file
+        SIZE_AND_MTIME // only compares file attributes, cheap enough to run on each boot
+    }
+
+    @Data
+    public static class VerificationResult {
+        private final Path installPath;
+        private final boolean valid;
+        private final List<String> errors;
+    }
+
+    @Data
+    @Builder
+    public static class InstallMetadata {
+        private final String releaseName;
+        private final String timestamp;
+        private final String os;
+        private final String arch;
+        private final ImageType imageType;
+        private final String checksum;
+        @NonNull
+        @Builder.Default
+        private final ExtractionFilter extractionFilter = ExtractionFilter.NONE;
+        @NonNull
+        @Builder.Default
+        private final List<String> cdsArchives = Collections.emptyList(); /* relative to the install folder, they must exist for the install to be valid */
+        @Builder.Default
+        private final boolean tarMetadataPreserved = false; /* installed with InstallJavaParams#preserveTarMetadata */
+    }
+
     @Data
     public static class JavaInstallDescription {
         private final Path installPath;
@@ -120,6 +252,9 @@ public class Model {
     @Data
     @Builder
     public static class InstallJavaParams {
+        public static final String OFFLINE_PROPERTY = "java.downloader.offline";
+        public static final String OFFLINE_ENV_VARIABLE = "JAVA_DOWNLOADER_OFFLINE";
+
         @NonNull
         private final String arch;
         @NonNull
@@ -130,11 +265,51 @@ public class Model {
         private boolean downloadLatest = true;
         @Builder.Default
         private boolean cleanExistingSameMajorVersion = true;
+        @Builder.Default
+        private boolean deferredCleanup = false; /* move superseded installs to a trash folder and delete them in the background */
+        @Builder.Default
+        private boolean pipelinedDownload = true; /* read the network and write the disk from separate threads */
+        @NonNull
+        @Builder.Default
+        private List<String> includePaths = Collections.emptyList(); /* globs relative to the java home, eg. "bin", "lib/**" */
+        @NonNull
+        @Builder.Default
+        private List<String> excludePaths = Collections.emptyList(); /* globs relative to the java home, eg. "lib/src.zip", "jmods", "demo", "man" */
+        private Path lockFile; /* pins the resolved release, installs skip the API once it is locked, see JavaDownloader#updateLock */
+        @Builder.Default
+        private boolean offline = isOfflineByDefault(); /* only use local installs, fail with NotAvailableLocallyException instead of reaching the API */
+        @Builder.Default
+        private boolean generateCdsArchive = false; /* dump the class data sharing archive missing from the vendor build, for installs of this machine's platform */
+        private Path cdsClassList; /* with generateCdsArchive, also dump an AppCDS archive lib/app-cds.jsa of the classes listed in this file */
+        @NonNull
+        @Builder.Default
+        private Durability durability = Durability.NONE; /* flushes of extracted files before the install is renamed into place */
+        @Builder.Default
+        private boolean preserveTarMetadata = false; /* .tar.gz archives: recreate symbolic and hard links as links and apply the POSIX permissions of the entries */
         @NonNull
         @Builder.Default
         private ImageType imageType = ImageType.JRE;
         @NonNull
         @Builder.Default
-        private Path javaDownloaderDir = Paths.get(System.getProperty("user.home")).resolve(".m2").resolve("java");
+        private Path javaDownloaderDir = defaultJavaDownloaderDir();
+        @NonNull
+        @Builder.Default
+        private List<Path> sharedCacheDirs = Collections.emptyList(); /* read-only roots with the javaDownloaderDir layout (eg. on a network volume), checked in order before downloading */
+
+        /**
+         * Offline mode can be enabled globally with the system property 'java.downloader.offline' or the environment variable 'JAVA_DOWNLOADER_OFFLINE' set to true.
+         */
+        public static boolean isOfflineByDefault() {
+            final String property = System.getProperty(OFFLINE_PROPERTY);
+            return Boolean.parseBoolean(property != null ? property : System.getenv(OFFLINE_ENV_VARIABLE));
+        }
+
+        public static Path defaultJavaDownloaderDir() {
+            return Paths.get(System.getProperty("user.home")).resolve(".m2").resolve("java");
+        }
+
+        public ExtractionFilter getExtractionFilter() {
+            return ExtractionFilter.of(includePaths, excludePaths);
+        }
     }
 }
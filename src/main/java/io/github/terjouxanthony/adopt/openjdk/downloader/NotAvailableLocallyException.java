@@ -0,0 +1,13 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import java.io.IOException;
+
+/**
+ * Thrown in offline mode when the requested JDK/JRE isn't installed, instead of reaching the network.
+ */
+public class NotAvailableLocallyException extends IOException {
+
+    public NotAvailableLocallyException(String message) {
+        super(message);
+    }
+}
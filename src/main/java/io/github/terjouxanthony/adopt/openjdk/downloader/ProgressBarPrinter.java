@@ -32,9 +32,9 @@ public class ProgressBarPrinter {
         sb.append(percentage);
         sb.append(" %]\r");
 
-        System.out.print(sb);
+        System.err.print(sb);
         if (percentage == 100) {
-            System.out.println();
+            System.err.println();
         }
     }
 }
@@ -0,0 +1,66 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * In-memory index of release names sorted by {@link JavaReleaseVersion}, answering version range queries without API requests.
+ * Names which are not java release names are ignored.
+ */
+public class ReleaseNameIndex {
+    private final NavigableSet<JavaReleaseVersion> versions = new TreeSet<>();
+    @Getter
+    private final long createdAtNanos = System.nanoTime();
+
+    public ReleaseNameIndex(Collection<String> releaseNames) {
+        for (String releaseName : releaseNames) {
+            JavaReleaseVersion.parse(releaseName).ifPresent(versions::add);
+        }
+    }
+
+    /**
+     * @return the release names in the range, latest first. Variants (eg. openj9 releases) are only included if asked.
+     */
+    public List<String> find(VersionRange range, boolean includeVariants) {
+        final List<String> releaseNames = new ArrayList<>();
+        final Iterator<JavaReleaseVersion> iterator = versions.descendingIterator();
+        while (iterator.hasNext()) {
+            final JavaReleaseVersion version = iterator.next();
+            if (range.isAbove(version)) {
+                break;
+            }
+            if ((includeVariants || !version.hasVariant()) && range.contains(version)) {
+                releaseNames.add(version.getReleaseName());
+            }
+        }
+        return releaseNames;
+    }
+
+    /**
+     * @return the latest hotspot release name in the range.
+     */
+    public Optional<String> findLatest(VersionRange range) {
+        final Iterator<JavaReleaseVersion> iterator = versions.descendingIterator();
+        while (iterator.hasNext()) {
+            final JavaReleaseVersion version = iterator.next();
+            if (range.isAbove(version)) {
+                return Optional.empty();
+            }
+            if (!version.hasVariant() && range.contains(version)) {
+                return Optional.of(version.getReleaseName());
+            }
+        }
+        return Optional.empty();
+    }
+
+    public int size() {
+        return versions.size();
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller runs the call, the others wait for it and get the same result or exception.
+ * Nothing is cached, a call made once the previous one has completed runs again.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @throws Exception the exception thrown by the call, as is
+     */
+    public V execute(K key, Callable<V> call) throws Exception {
+        final CompletableFuture<V> created = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing == null) {
+            try {
+                final V result = call.call();
+                created.complete(result);
+                return result;
+            } catch (Exception | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, created);
+            }
+        }
+
+        try {
+            return existing.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * @return the number of calls currently running
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
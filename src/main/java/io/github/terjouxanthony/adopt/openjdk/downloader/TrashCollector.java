@@ -0,0 +1,143 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Deferred deletion of folders: they are renamed into a trash folder of the javaDownloaderDir,
+ * which is cheap whatever their size, and deleted from a background thread.
+ * Trash left by a previous process (eg. killed before the deletion completed) is collected the first time a javaDownloaderDir is used,
+ * with the work folders of installs which crashed, once older than {@link #LEFTOVER_GRACE_PERIOD}.
+ */
+@Slf4j
+public class TrashCollector {
+    public static final String TRASH_FOLDER_NAME = ".trash";
+    /* A work folder untouched for longer isn't used by an install in progress anymore */
+    public static final Duration LEFTOVER_GRACE_PERIOD = Duration.ofDays(1);
+
+    /* Work folders of installs, jlink runs, extractions and imports, eg. "jdk-16.0.1+9--2021-04-23T09-10-06Z--linux_x64_temporary-<uuid>" */
+    static final Pattern WORK_FOLDER_PATTERN = Pattern.compile(".*(_temporary|_replaced)-[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    /* javaDownloaderDir/<jre|jdk>/<version>/<os_arch>/<work folder> is the deepest one */
+    private static final int MAX_WORK_FOLDER_DEPTH = 4;
+
+    private final FileSystemHandler fileSystemHandler;
+    private final Set<Path> collectedTrashFolders = ConcurrentHashMap.newKeySet();
+    private final ExecutorService deleter = BlockingIoExecutors.newExecutor("java-downloader-trash-collector", 1);
+
+    public TrashCollector(FileSystemHandler fileSystemHandler) {
+        this.fileSystemHandler = fileSystemHandler;
+    }
+
+    public void trash(Path javaDownloaderDir, Path folder) throws IOException {
+        final Path trashFolder = javaDownloaderDir.resolve(TRASH_FOLDER_NAME);
+        fileSystemHandler.mkdir(trashFolder);
+        final Path trashedFolder = trashFolder.resolve(folder.getFileName().toString() + "-" + UUID.randomUUID());
+        try {
+            fileSystemHandler.moveAtomically(folder, trashedFolder);
+        } catch (IOException e) {
+            log.warn("Impossible to move {} to the trash folder, deleting it now: {}", folder, e.toString());
+            fileSystemHandler.deleteRecursively(folder);
+            return;
+        }
+        scheduleDeletion(trashedFolder);
+    }
+
+    public void collectLeftovers(Path javaDownloaderDir) throws IOException {
+        final Path trashFolder = javaDownloaderDir.resolve(TRASH_FOLDER_NAME).toAbsolutePath().normalize();
+        if (!collectedTrashFolders.add(trashFolder)) {
+            return;
+        }
+        if (fileSystemHandler.fileOrFolderExists(trashFolder)) {
+            for (Path leftover : fileSystemHandler.listFolder(trashFolder)) {
+                log.debug("Collecting trash leftover {}", leftover);
+                scheduleDeletion(leftover);
+            }
+        }
+        for (Path workFolder : findStaleWorkFolders(javaDownloaderDir, trashFolder)) {
+            log.info("Collecting work folder {} left by a crashed install", workFolder);
+            trash(javaDownloaderDir, workFolder);
+        }
+    }
+
+    private static List<Path> findStaleWorkFolders(Path javaDownloaderDir, Path trashFolder) throws IOException {
+        final List<Path> workFolders = new ArrayList<>();
+        if (!Files.isDirectory(javaDownloaderDir)) {
+            return workFolders;
+        }
+        final Instant staleBefore = Instant.now().minus(LEFTOVER_GRACE_PERIOD);
+        Files.walkFileTree(javaDownloaderDir.toAbsolutePath().normalize(), Collections.emptySet(), MAX_WORK_FOLDER_DEPTH, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                if (dir.equals(trashFolder)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (dir.getFileName() != null && WORK_FOLDER_PATTERN.matcher(dir.getFileName().toString()).matches()) {
+                    visitFile(dir, attributes);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                // folders at the maximum depth are visited as files
+                if (attributes.isDirectory() && WORK_FOLDER_PATTERN.matcher(file.getFileName().toString()).matches()
+                        && attributes.lastModifiedTime().toInstant().isBefore(staleBefore)) {
+                    workFolders.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.debug("Impossible to visit {}: {}", file, e.toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return workFolders;
+    }
+
+    /**
+     * Waits until the deletions scheduled so far are done.
+     *
+     * @return false if the timeout elapsed before.
+     */
+    public boolean awaitPendingDeletions(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            deleter.submit(() -> {
+            }).get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void scheduleDeletion(Path folder) {
+        deleter.execute(() -> {
+            final long start = System.nanoTime();
+            fileSystemHandler.deleteRecursively(folder);
+            log.debug("Deleted {} in {} ms", folder, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        });
+    }
+}
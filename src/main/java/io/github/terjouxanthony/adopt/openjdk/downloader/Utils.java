@@ -3,15 +3,30 @@ package io.github.terjouxanthony.adopt.openjdk.downloader;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
 import java.util.function.LongConsumer;
 
 @Slf4j
 public class Utils {
     public static final ObjectMapper MAPPER = new ObjectMapper();
 
+    /* The buffer is allocated once at the maximum size, reallocating a direct buffer is costly: only its read window (its limit) adapts */
+    static final int MIN_TRANSFER_WINDOW = 64 * 1024;
+    static final int MAX_TRANSFER_WINDOW = 4 * 1024 * 1024;
+    /* The window is sized to be filled in about this long at the measured throughput */
+    private static final long TARGET_FILL_NANOS = 10_000_000L;
+
     public static long transferTo(InputStream in, OutputStream out, int bufferSize, LongConsumer nbBytesReadConsumer) throws IOException {
         long transferred = 0;
         byte[] buffer = new byte[bufferSize];
@@ -24,4 +39,132 @@ public class Utils {
         return transferred;
     }
 
+    /**
+     * Copies a channel (eg. an OkHttp response source) into a file through a direct buffer, avoiding the heap copies of the stream based version.
+     * The read window starts at 64 KiB, then doubles or halves, between 64 KiB and 4 MiB, to hold about 10 ms of the measured throughput:
+     * fast links get few large writes, slow links still report progress often.
+     */
+    public static long transferTo(ReadableByteChannel in, FileChannel out, LongConsumer nbBytesReadConsumer) throws IOException {
+        long transferred = 0;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_TRANSFER_WINDOW);
+        int window = MIN_TRANSFER_WINDOW;
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            buffer.clear().limit(window);
+            final long start = System.nanoTime();
+            endOfStream = fill(in, buffer);
+            final long fillNanos = System.nanoTime() - start;
+
+            buffer.flip();
+            final int read = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            transferred += read;
+            if (read > 0) {
+                nbBytesReadConsumer.accept(read);
+            }
+            if (!endOfStream) {
+                window = adaptWindow(window, read, fillNanos);
+            }
+        }
+        return transferred;
+    }
+
+    /**
+     * @return the window holding about {@link #TARGET_FILL_NANOS} of the throughput of the last fill, moving by a factor 2 at most
+     */
+    static int adaptWindow(int window, int read, long fillNanos) {
+        final double targetWindow = (double) read * TARGET_FILL_NANOS / Math.max(1, fillNanos);
+        if (targetWindow >= 2.0 * window && window < MAX_TRANSFER_WINDOW) {
+            log.debug("Growing transfer window to {} bytes", window * 2);
+            return window * 2;
+        }
+        if (targetWindow <= window / 2.0 && window > MIN_TRANSFER_WINDOW) {
+            log.debug("Shrinking transfer window to {} bytes", window / 2);
+            return window / 2;
+        }
+        return window;
+    }
+
+    /**
+     * @return true if the end of the channel was reached.
+     */
+    static boolean fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the binaries of an install for this os and arch can be run on this machine, eg. its jlink.
+     */
+    static boolean isHostPlatform(String os, String arch) {
+        final String osName = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        final String hostOs;
+        if (osName.startsWith("windows")) {
+            hostOs = "windows";
+        } else if (osName.startsWith("mac")) {
+            hostOs = "mac";
+        } else if (osName.startsWith("linux")) {
+            hostOs = Files.exists(Paths.get("/etc/alpine-release")) ? "alpine-linux" : "linux";
+        } else if (osName.startsWith("sunos")) {
+            hostOs = "solaris";
+        } else {
+            hostOs = osName;
+        }
+        return hostOs.equals(os) && hostArch().equals(arch);
+    }
+
+    private static String hostArch() {
+        final String osArch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+        switch (osArch) {
+            case "amd64":
+            case "x86_64":
+                return "x64";
+            case "x86":
+            case "i386":
+            case "i686":
+                return "x32";
+            case "arm64":
+                return "aarch64";
+            default:
+                return osArch;
+        }
+    }
+
+    /**
+     * Runs a command line tool to completion, its output is logged at debug level.
+     *
+     * @throws IOException if the tool exits with an error, with its output
+     */
+    static void runTool(List<String> command) throws IOException, InterruptedException {
+        log.debug("Running {}", command);
+        final Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .start();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final int exitCode;
+        boolean exited = false;
+        try {
+            try (InputStream in = process.getInputStream()) {
+                transferTo(in, output, 8192, read -> {
+                });
+            }
+            exitCode = process.waitFor();
+            exited = true;
+        } finally {
+            if (!exited) {
+                process.destroyForcibly(); // eg. interrupted, the tool must not outlive the install
+            }
+        }
+        final String outputText = new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+        log.debug("{} output: {}", command.get(0), outputText);
+        if (exitCode != 0) {
+            throw new IOException(command.get(0) + " failed with exit code " + exitCode + " : " + outputText);
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maven style version range over java versions, the same syntax as the 'version' parameter of the AdoptOpenJdk API.
+ * <p>
+ * Examples: [11,12) for all java 11 releases, [11.0.4,) for 11.0.4 and later, (,1.0] or [1,2),[3,4) for unions.
+ * A bound without build number compares version numbers only, so [11,11.0.2] contains 11.0.2+7.
+ * A plain version such as 11 or 11.0.4+11 contains the versions it is a prefix of.
+ */
+public class VersionRange {
+    private final String spec;
+    private final List<Restriction> restrictions;
+
+    private VersionRange(String spec, List<Restriction> restrictions) {
+        this.spec = spec;
+        this.restrictions = restrictions;
+    }
+
+    public static VersionRange parse(String spec) {
+        final String trimmed = spec.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Empty version range");
+        }
+        if (trimmed.charAt(0) != '[' && trimmed.charAt(0) != '(') {
+            return new VersionRange(trimmed, Collections.singletonList(new Restriction(JavaReleaseVersion.parsePlainVersion(trimmed))));
+        }
+
+        final List<Restriction> restrictions = new ArrayList<>();
+        int start = 0;
+        while (start < trimmed.length()) {
+            final int end = indexOfClosingBracket(trimmed, start);
+            restrictions.add(parseRestriction(trimmed.substring(start, end + 1)));
+            start = end + 1;
+            if (start < trimmed.length()) {
+                if (trimmed.charAt(start) != ',') {
+                    throw new IllegalArgumentException("Invalid version range " + spec);
+                }
+                start++;
+            }
+        }
+        return new VersionRange(trimmed, restrictions);
+    }
+
+    public boolean contains(JavaReleaseVersion version) {
+        for (Restriction restriction : restrictions) {
+            if (restriction.contains(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if no version lower than or equal to this one can be in the range.
+     */
+    boolean isAbove(JavaReleaseVersion version) {
+        for (Restriction restriction : restrictions) {
+            if (restriction.lowerBound == null || compareToBound(version, restriction.lowerBound) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOfClosingBracket(String spec, int start) {
+        for (int i = start; i < spec.length(); i++) {
+            if (spec.charAt(i) == ']' || spec.charAt(i) == ')') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unclosed version range " + spec);
+    }
+
+    private static Restriction parseRestriction(String restriction) {
+        final boolean lowerInclusive = restriction.charAt(0) == '[';
+        final boolean upperInclusive = restriction.charAt(restriction.length() - 1) == ']';
+        final String content = restriction.substring(1, restriction.length() - 1);
+        final int comma = content.indexOf(',');
+        if (comma < 0) {
+            if (!lowerInclusive || !upperInclusive) {
+                throw new IllegalArgumentException("Single version restriction must be inclusive: " + restriction);
+            }
+            final JavaReleaseVersion version = JavaReleaseVersion.parsePlainVersion(content);
+            return new Restriction(version, true, version, true, false);
+        }
+        final String lower = content.substring(0, comma).trim();
+        final String upper = content.substring(comma + 1).trim();
+        return new Restriction(
+                lower.isEmpty() ? null : JavaReleaseVersion.parsePlainVersion(lower), lowerInclusive,
+                upper.isEmpty() ? null : JavaReleaseVersion.parsePlainVersion(upper), upperInclusive,
+                false);
+    }
+
+    private static int compareToBound(JavaReleaseVersion version, JavaReleaseVersion bound) {
+        int result = version.compareNumbers(bound);
+        if (result != 0 || bound.getBuild() == null) {
+            return result;
+        }
+        result = Integer.compare(version.getBuild() == null ? -1 : version.getBuild(), bound.getBuild());
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(version.getRebuild(), bound.getRebuild());
+    }
+
+    private static class Restriction {
+        private final JavaReleaseVersion lowerBound;
+        private final boolean lowerInclusive;
+        private final JavaReleaseVersion upperBound;
+        private final boolean upperInclusive;
+        private final boolean prefix;
+
+        Restriction(JavaReleaseVersion lowerBound, boolean lowerInclusive, JavaReleaseVersion upperBound, boolean upperInclusive, boolean prefix) {
+            this.lowerBound = lowerBound;
+            this.lowerInclusive = lowerInclusive;
+            this.upperBound = upperBound;
+            this.upperInclusive = upperInclusive;
+            this.prefix = prefix;
+        }
+
+        Restriction(JavaReleaseVersion prefixVersion) {
+            this(prefixVersion, true, prefixVersion, true, true);
+        }
+
+        boolean contains(JavaReleaseVersion version) {
+            if (prefix) {
+                return isPrefixOf(lowerBound, version);
+            }
+            if (lowerBound != null) {
+                final int result = compareToBound(version, lowerBound);
+                if (result < 0 || (result == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upperBound != null) {
+                final int result = compareToBound(version, upperBound);
+                return result < 0 || (result == 0 && upperInclusive);
+            }
+            return true;
+        }
+
+        private static boolean isPrefixOf(JavaReleaseVersion prefixVersion, JavaReleaseVersion version) {
+            final List<Integer> prefixNumbers = prefixVersion.getNumbers();
+            for (int i = 0; i < prefixNumbers.size(); i++) {
+                final int number = i < version.getNumbers().size() ? version.getNumbers().get(i) : 0;
+                if (number != prefixNumbers.get(i)) {
+                    return false;
+                }
+            }
+            if (prefixVersion.getBuild() == null) {
+                return true;
+            }
+            return prefixVersion.getBuild().equals(version.getBuild())
+                    && (prefixVersion.getRebuild() == 0 || prefixVersion.getRebuild() == version.getRebuild());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
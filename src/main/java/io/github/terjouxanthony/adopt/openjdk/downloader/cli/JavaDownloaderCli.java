@@ -0,0 +1,384 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader.cli;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallDaemon;
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallDaemonClient;
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallMetadataFile;
+import io.github.terjouxanthony.adopt.openjdk.downloader.JavaDownloader;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.Durability;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ImageType;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams.InstallJavaParamsBuilder;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallMetadata;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JlinkParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.RetentionPolicy;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Command line entry point, every command prints a JSON document on the standard output. Logs go to the error output.
+ * <pre>
+ * install --os linux --arch x64 (--version 16 | --release jdk-16.0.1+9) [--image-type jre|jdk] [--latest] [--no-clean] [--offline] [--lock-file file] [--shared-dirs folders] [--cds [--cds-class-list file]] [--durability none|batched|strict] [--preserve-tar-metadata] [--dir folder | --daemon-port port]
+ * jlink --os linux --arch x64 (--version 17 | --release jdk-17.0.1+12) --modules java.base,java.logging [--compress 2] [same options as install]
+ * list [--dir folder]
+ * resolve (version range, eg. [11,12) or 16) [--all]
+ * clean [--dir folder]
+ * import (bundle folder or .tar file) [--parallelism n] [--dir folder]
+ * export (snapshot file, .tar or .tar.gz) [install folders, all by default] [--dir folder]
+ * restore (snapshot file) [--dir folder]
+ * retain [--max-size bytes, eg. 10G] [--max-idle-days n] [--lock-file file] [--dir folder]
+ * pin|unpin (install folder)
+ * daemon [--port 7878] [--dir folder]
+ * </pre>
+ * Exit code is 0 on success, 1 on failure and 2 on invalid arguments.
+ */
+public class JavaDownloaderCli {
+
+    private static final Set<String> FLAGS = new HashSet<>(Arrays.asList("--latest", "--no-clean", "--all", "--offline", "--cds", "--preserve-tar-metadata"));
+
+    public static void main(String[] args) {
+        final int exitCode = execute(args, System.out, System.err);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * @return the exit code
+     */
+    static int execute(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("help")) {
+            err.println(usage());
+            return args.length == 0 ? 2 : 0;
+        }
+
+        final Object result;
+        try {
+            final Arguments arguments = Arguments.parse(Arrays.asList(args).subList(1, args.length));
+            result = run(args[0], arguments);
+        } catch (UsageException e) {
+            err.println(e.getMessage());
+            err.println(usage());
+            return 2;
+        } catch (Exception e) {
+            out.println(JsonWriter.toJson(map("error", String.valueOf(e.getMessage()), "type", e.getClass().getName())));
+            return 1;
+        }
+        out.println(JsonWriter.toJson(result));
+        return 0;
+    }
+
+    static Object run(String command, Arguments arguments) throws Exception {
+        switch (command) {
+            case "install":
+                return install(arguments);
+            case "jlink":
+                return jlink(arguments);
+            case "list":
+                return list(arguments);
+            case "resolve":
+                return resolve(arguments);
+            case "clean":
+                return clean(arguments);
+            case "import":
+                return importBundle(arguments);
+            case "export":
+                return exportSnapshot(arguments);
+            case "restore":
+                return restoreSnapshot(arguments);
+            case "retain":
+                return retain(arguments);
+            case "pin":
+            case "unpin":
+                return pin(arguments, command.equals("pin"));
+            case "daemon":
+                return daemon(arguments);
+            default:
+                throw new UsageException("Unknown command " + command);
+        }
+    }
+
+    private static Object install(Arguments arguments) throws Exception {
+        final Optional<String> daemonPort = arguments.get("--daemon-port");
+        final JavaInstallDescription installation = daemonPort.isPresent()
+                ? new InstallDaemonClient(parseInt("--daemon-port", daemonPort.get())).installJava(installParams(arguments, "jre"))
+                : new JavaDownloader().installJava(installParams(arguments, "jre"));
+        return map("installPath", installation.getInstallPath().toAbsolutePath(),
+                "jdkHome", installation.getJdkHomePath().toAbsolutePath());
+    }
+
+    private static Object jlink(Arguments arguments) throws Exception {
+        final JlinkParams params = JlinkParams.builder()
+                .jdkParams(installParams(arguments, "jdk"))
+                .modules(Arrays.asList(arguments.required("--modules").split(",")))
+                .compress(arguments.get("--compress").orElse("2"))
+                .build();
+        final JavaInstallDescription runtime = new JavaDownloader().installJlinkRuntime(params);
+        return map("installPath", runtime.getInstallPath().toAbsolutePath(),
+                "jdkHome", runtime.getJdkHomePath().toAbsolutePath());
+    }
+
+    private static InstallJavaParams installParams(Arguments arguments, String defaultImageType) {
+        InstallJavaParamsBuilder builder = InstallJavaParams.builder()
+                .os(arguments.required("--os"))
+                .arch(arguments.required("--arch"))
+                .imageType(parseImageType(arguments.get("--image-type").orElse(defaultImageType)))
+                .downloadLatest(arguments.has("--latest"))
+                .cleanExistingSameMajorVersion(!arguments.has("--no-clean"))
+                .offline(arguments.has("--offline") || InstallJavaParams.isOfflineByDefault())
+                .generateCdsArchive(arguments.has("--cds"))
+                .cdsClassList(arguments.get("--cds-class-list").map(Paths::get).orElse(null))
+                .durability(parseDurability(arguments.get("--durability").orElse("none")))
+                .preserveTarMetadata(arguments.has("--preserve-tar-metadata"))
+                .javaDownloaderDir(javaDownloaderDir(arguments));
+
+        final Optional<String> release = arguments.get("--release");
+        final Optional<String> version = arguments.get("--version");
+        if (release.isPresent()) {
+            builder = builder.fullJavaReleaseName(release.get());
+        } else if (version.isPresent()) {
+            builder = builder.javaVersion(parseInt("--version", version.get()));
+        } else {
+            throw new UsageException("Either --version or --release must be provided");
+        }
+        final Optional<String> sharedDirs = arguments.get("--shared-dirs");
+        if (sharedDirs.isPresent()) {
+            builder = builder.sharedCacheDirs(Arrays.stream(sharedDirs.get().split(File.pathSeparator))
+                    .map(Paths::get)
+                    .collect(Collectors.toList()));
+        }
+        final Optional<String> lockFile = arguments.get("--lock-file");
+        if (lockFile.isPresent()) {
+            builder = builder.lockFile(Paths.get(lockFile.get()));
+        }
+        return builder.build();
+    }
+
+    private static Object list(Arguments arguments) throws Exception {
+        final InstallMetadataFile installMetadataFile = new InstallMetadataFile();
+        final List<Object> installs = new ArrayList<>();
+        for (Path installPath : new JavaDownloader().listInstalls(javaDownloaderDir(arguments))) {
+            final Map<String, Object> install = new LinkedHashMap<>();
+            install.put("installPath", installPath.toAbsolutePath());
+            final Optional<InstallMetadata> metadata = installMetadataFile.read(installPath);
+            if (metadata.isPresent()) {
+                install.put("releaseName", metadata.get().getReleaseName());
+                install.put("timestamp", metadata.get().getTimestamp());
+                install.put("imageType", metadata.get().getImageType().getValue());
+                install.put("os", metadata.get().getOs());
+                install.put("arch", metadata.get().getArch());
+                install.put("includes", metadata.get().getExtractionFilter().getIncludes());
+                install.put("excludes", metadata.get().getExtractionFilter().getExcludes());
+            }
+            installs.add(install);
+        }
+        return installs;
+    }
+
+    private static Object resolve(Arguments arguments) throws Exception {
+        if (arguments.getPositionals().size() != 1) {
+            throw new UsageException("resolve takes a single version range, eg. [11,12) or 16");
+        }
+        final String versionRange = arguments.getPositionals().get(0);
+        final JavaDownloader javaDownloader = new JavaDownloader();
+        if (arguments.has("--all")) {
+            return map("range", versionRange, "releases", javaDownloader.findReleases(versionRange));
+        }
+        return map("range", versionRange, "releaseName", javaDownloader.findLatestRelease(versionRange).orElse(null));
+    }
+
+    private static Object clean(Arguments arguments) throws Exception {
+        final List<Path> deletedInstalls = new JavaDownloader().cleanSupersededInstalls(javaDownloaderDir(arguments));
+        return map("deleted", deletedInstalls.stream().map(Path::toAbsolutePath).collect(Collectors.toList()));
+    }
+
+    private static Object importBundle(Arguments arguments) throws Exception {
+        if (arguments.getPositionals().size() != 1) {
+            throw new UsageException("import takes a single bundle folder or .tar file");
+        }
+        final int parallelism = parseInt("--parallelism", arguments.get("--parallelism")
+                .orElse(String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final List<Path> installs = new JavaDownloader().importBundle(
+                Paths.get(arguments.getPositionals().get(0)), javaDownloaderDir(arguments), parallelism);
+        return map("installed", installs.stream().map(Path::toAbsolutePath).collect(Collectors.toList()));
+    }
+
+    private static Object exportSnapshot(Arguments arguments) throws Exception {
+        if (arguments.getPositionals().isEmpty()) {
+            throw new UsageException("export takes a snapshot file followed by the install folders to export");
+        }
+        final JavaDownloader javaDownloader = new JavaDownloader();
+        final Path javaDownloaderDir = javaDownloaderDir(arguments);
+        final Path snapshotFile = Paths.get(arguments.getPositionals().get(0));
+        final List<Path> installs = arguments.getPositionals().size() > 1
+                ? arguments.getPositionals().subList(1, arguments.getPositionals().size()).stream().map(Paths::get).collect(Collectors.toList())
+                : javaDownloader.listInstalls(javaDownloaderDir);
+        javaDownloader.exportSnapshot(javaDownloaderDir, installs, snapshotFile);
+        return map("snapshot", snapshotFile.toAbsolutePath(),
+                "exported", installs.stream().map(Path::toAbsolutePath).collect(Collectors.toList()));
+    }
+
+    private static Object restoreSnapshot(Arguments arguments) throws Exception {
+        if (arguments.getPositionals().size() != 1) {
+            throw new UsageException("restore takes a single snapshot file");
+        }
+        final List<Path> installs = new JavaDownloader().restoreSnapshot(Paths.get(arguments.getPositionals().get(0)), javaDownloaderDir(arguments));
+        return map("restored", installs.stream().map(Path::toAbsolutePath).collect(Collectors.toList()));
+    }
+
+    private static Object retain(Arguments arguments) throws Exception {
+        final RetentionPolicy policy = RetentionPolicy.builder()
+                .maxTotalSizeBytes(arguments.get("--max-size").map(JavaDownloaderCli::parseSize).orElse(null))
+                .maxIdleTime(arguments.get("--max-idle-days").map(days -> Duration.ofDays(parseInt("--max-idle-days", days))).orElse(null))
+                .lockFiles(arguments.get("--lock-file").map(Paths::get).map(Collections::singletonList).orElse(Collections.emptyList()))
+                .build();
+        final List<Path> evictedInstalls = new JavaDownloader().applyRetention(javaDownloaderDir(arguments), policy);
+        return map("evicted", evictedInstalls.stream().map(Path::toAbsolutePath).collect(Collectors.toList()));
+    }
+
+    private static Object pin(Arguments arguments, boolean pin) throws Exception {
+        if (arguments.getPositionals().size() != 1) {
+            throw new UsageException("pin and unpin take a single install folder");
+        }
+        final Path installFolder = Paths.get(arguments.getPositionals().get(0));
+        if (pin) {
+            new JavaDownloader().pinInstall(installFolder);
+        } else {
+            new JavaDownloader().unpinInstall(installFolder);
+        }
+        return map("installPath", installFolder.toAbsolutePath(), "pinned", pin);
+    }
+
+    /**
+     * Serves until the process is killed.
+     */
+    private static Object daemon(Arguments arguments) throws Exception {
+        final int port = parseInt("--port", arguments.get("--port").orElse(String.valueOf(InstallDaemon.DEFAULT_PORT)));
+        try (InstallDaemon daemon = InstallDaemon.start(new JavaDownloader(), javaDownloaderDir(arguments), port)) {
+            System.err.println("Listening on port " + daemon.getPort());
+            Thread.currentThread().join();
+        }
+        return map("stopped", true);
+    }
+
+    private static long parseSize(String size) {
+        final String units = "KMGT";
+        final char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+        final int power = units.indexOf(unit) + 1;
+        try {
+            if (power == 0) {
+                return Long.parseLong(size);
+            }
+            return Long.parseLong(size.substring(0, size.length() - 1)) << (10 * power);
+        } catch (NumberFormatException e) {
+            throw new UsageException("Invalid --max-size " + size + ", eg. 10G");
+        }
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new UsageException("Invalid " + name + " " + value + ", must be a number");
+        }
+    }
+
+    private static Path javaDownloaderDir(Arguments arguments) {
+        return arguments.get("--dir").map(Paths::get).orElseGet(InstallJavaParams::defaultJavaDownloaderDir);
+    }
+
+    private static ImageType parseImageType(String imageType) {
+        if ("jdk".equalsIgnoreCase(imageType)) {
+            return ImageType.JDK;
+        }
+        if ("jre".equalsIgnoreCase(imageType)) {
+            return ImageType.JRE;
+        }
+        throw new UsageException("Invalid --image-type, must be either jdk or jre");
+    }
+
+    private static Durability parseDurability(String durability) {
+        try {
+            return Durability.valueOf(durability.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new UsageException("Invalid --durability, must be either none, batched or strict");
+        }
+    }
+
+    private static Map<String, Object> map(Object... keysAndValues) {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static String usage() {
+        return "Usage:\n" +
+                "  install --os linux --arch x64 (--version 16 | --release jdk-16.0.1+9) [--image-type jre|jdk] [--latest] [--no-clean] [--offline] [--lock-file file] [--shared-dirs folders] [--cds [--cds-class-list file]] [--durability none|batched|strict] [--preserve-tar-metadata] [--dir folder | --daemon-port port]\n" +
+                "  jlink --os linux --arch x64 (--version 17 | --release jdk-17.0.1+12) --modules java.base,java.logging [--compress 2] [same options as install]\n" +
+                "  list [--dir folder]\n" +
+                "  resolve <version range, eg. [11,12) or 16> [--all]\n" +
+                "  clean [--dir folder]\n" +
+                "  import <bundle folder or .tar file> [--parallelism n] [--dir folder]\n" +
+                "  export <snapshot file, .tar or .tar.gz> [install folders, all by default] [--dir folder]\n" +
+                "  restore <snapshot file> [--dir folder]\n" +
+                "  retain [--max-size bytes, eg. 10G] [--max-idle-days n] [--lock-file file] [--dir folder]\n" +
+                "  pin|unpin <install folder>\n" +
+                "  daemon [--port 7878] [--dir folder]";
+    }
+
+    static class Arguments {
+        private final Map<String, String> options = new HashMap<>();
+        private final List<String> positionals = new ArrayList<>();
+
+        static Arguments parse(List<String> args) {
+            final Arguments arguments = new Arguments();
+            for (int i = 0; i < args.size(); i++) {
+                final String arg = args.get(i);
+                if (FLAGS.contains(arg)) {
+                    arguments.options.put(arg, "true");
+                } else if (arg.startsWith("--")) {
+                    if (i + 1 >= args.size()) {
+                        throw new UsageException("Missing value for " + arg);
+                    }
+                    arguments.options.put(arg, args.get(++i));
+                } else {
+                    arguments.positionals.add(arg);
+                }
+            }
+            return arguments;
+        }
+
+        Optional<String> get(String name) {
+            return Optional.ofNullable(options.get(name));
+        }
+
+        boolean has(String name) {
+            return options.containsKey(name);
+        }
+
+        String required(String name) {
+            return get(name).orElseThrow(() -> new UsageException("Missing " + name));
+        }
+
+        List<String> getPositionals() {
+            return positionals;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader.cli;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Minimal JSON serialization of strings, numbers, booleans, lists and maps, so that commands answered
+ * from the local installs don't need to load a JSON library.
+ */
+final class JsonWriter {
+
+    private JsonWriter() {
+    }
+
+    static String toJson(Object value) {
+        final StringBuilder json = new StringBuilder();
+        write(json, value);
+        return json.toString();
+    }
+
+    private static void write(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof Map) {
+            json.append('{');
+            final Iterator<? extends Map.Entry<?, ?>> entries = ((Map<?, ?>) value).entrySet().iterator();
+            while (entries.hasNext()) {
+                final Map.Entry<?, ?> entry = entries.next();
+                writeString(json, String.valueOf(entry.getKey()));
+                json.append(':');
+                write(json, entry.getValue());
+                if (entries.hasNext()) {
+                    json.append(',');
+                }
+            }
+            json.append('}');
+        } else if (value instanceof Collection) {
+            json.append('[');
+            final Iterator<?> elements = ((Collection<?>) value).iterator();
+            while (elements.hasNext()) {
+                write(json, elements.next());
+                if (elements.hasNext()) {
+                    json.append(',');
+                }
+            }
+            json.append(']');
+        } else {
+            writeString(json, value.toString());
+        }
+    }
+
+    private static void writeString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader.cli;
+
+/**
+ * Invalid command line arguments: the usage is printed and the exit code is 2.
+ * Other exceptions, IllegalArgumentException of the library included, are failures reported as JSON with the exit code 1.
+ */
+class UsageException extends RuntimeException {
+
+    UsageException(String message) {
+        super(message);
+    }
+}
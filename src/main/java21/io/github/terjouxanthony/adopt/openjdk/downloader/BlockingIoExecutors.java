@@ -0,0 +1,97 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads for tasks spending most of their time blocked on the network or the disk: downloads, installs, copies.
+ * <p>
+ * This is the Java 21+ variant of the multi-release jar: tasks run on virtual threads, a blocked task doesn't hold an OS thread.
+ * Executors keep the same bound on concurrent tasks as the platform pools of the Java 8 variant.
+ */
+public final class BlockingIoExecutors {
+
+    private BlockingIoExecutors() {
+    }
+
+    /**
+     * @param maxConcurrency at most this many tasks run at the same time, the others are queued
+     */
+    public static ExecutorService newExecutor(String name, int maxConcurrency) {
+        return new BoundedExecutor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory()), Math.max(1, maxConcurrency));
+    }
+
+    /**
+     * @return a virtual thread, not started
+     */
+    public static Thread newThread(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).unstarted(task);
+    }
+
+    public static boolean usesVirtualThreads() {
+        return true;
+    }
+
+    /**
+     * Each task gets its own virtual thread, which waits for a permit before running: virtual threads are not meant to be pooled.
+     * Permits are fair, but the order in which the virtual threads reach the semaphore is up to the scheduler: tasks may start out of submission order.
+     */
+    private static final class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        private BoundedExecutor(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency, true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    if (task instanceof Future<?> future) {
+                        future.cancel(false); // shut down before the task could start
+                    }
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import io.github.terjouxanthony.adopt.openjdk.downloader.BlockingIoExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs by failsafe against the packaged multi-release jar, in the java21 profile: target/classes alone would only give the Java 8 variant.
+ */
+public class BlockingIoExecutorsIT {
+
+    @Test
+    public void should_run_blocking_io_tasks_on_a_bounded_number_of_virtual_threads() throws Exception {
+        //given
+        final ExecutorService executor = BlockingIoExecutors.newExecutor("test-blocking-io", 3);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Set<Boolean> virtual = ConcurrentHashMap.newKeySet();
+
+        try {
+            //when
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> {
+                    virtual.add((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            //then
+            assertThat(BlockingIoExecutors.class.getProtectionDomain().getCodeSource().getLocation().getPath()).endsWith(".jar");
+            assertThat(BlockingIoExecutors.usesVirtualThreads()).isTrue();
+            assertThat(virtual).containsExactly(true);
+            assertThat(maxRunning.get()).isEqualTo(3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
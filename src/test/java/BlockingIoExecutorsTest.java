@@ -0,0 +1,43 @@
+import io.github.terjouxanthony.adopt.openjdk.downloader.BlockingIoExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlockingIoExecutorsTest {
+
+    @Test
+    public void should_run_at_most_max_concurrency_blocking_io_tasks_at_once() throws Exception {
+        //given
+        final ExecutorService executor = BlockingIoExecutors.newExecutor("test-blocking-io", 3);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        try {
+            //when
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            //then
+            assertThat(maxRunning.get()).isEqualTo(3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
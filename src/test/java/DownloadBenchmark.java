@@ -0,0 +1,195 @@
+import io.github.terjouxanthony.adopt.openjdk.downloader.ArchiveUnpacker;
+import io.github.terjouxanthony.adopt.openjdk.downloader.DownloadPipeline;
+import io.github.terjouxanthony.adopt.openjdk.downloader.ExtractionFilter;
+import io.github.terjouxanthony.adopt.openjdk.downloader.FileSyncer;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.Durability;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Utils;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmarks of the download and extraction paths, disabled by default.
+ * Run with: mvn test -Dtest=DownloadBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class DownloadBenchmark {
+
+    private static final long PAYLOAD_SIZE = 1024L * 1024 * 1024;
+    private static final int ITERATIONS = 5;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final DownloadPipeline pipeline = new DownloadPipeline();
+    private Path folder;
+
+    @BeforeEach
+    public void before() throws IOException {
+        folder = Files.createTempDirectory("java-downloader-bench");
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(folder.toFile());
+    }
+
+    @Test
+    public void stream_vs_nio_download() throws Exception {
+        final Path target = folder.resolve("archive");
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            measure("stream (byte[8192])", () -> {
+                try (BufferedSource source = fakeNetworkSource();
+                     OutputStream out = Files.newOutputStream(target)) {
+                    return Utils.transferTo(source.inputStream(), out, 8192, n -> {
+                    });
+                }
+            });
+
+            measure("nio (adaptive direct buffer)", () -> {
+                try (BufferedSource source = fakeNetworkSource();
+                     FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    return Utils.transferTo(source, out, n -> {
+                    });
+                }
+            });
+
+            measure("nio pipelined (writer CPU)", () -> {
+                try (BufferedSource source = fakeNetworkSource();
+                     FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    return pipeline.transfer(source, out, n -> {
+                    }).getTransferredBytes();
+                }
+            });
+        }
+    }
+
+    /**
+     * The read window of the direct buffer follows the throughput: large writes on a fast link, frequent progress updates on a slow one.
+     */
+    @Test
+    public void adaptive_window_on_fast_and_slow_links() throws Exception {
+        final Path target = folder.resolve("archive");
+        measureWindow("fast link", target, fakeNetworkSource(PAYLOAD_SIZE, 0));
+        measureWindow("slow link (8 MB/s)", target, fakeNetworkSource(32L * 1024 * 1024, 8L * 1024 * 1024));
+    }
+
+    private static void measureWindow(String name, Path target, BufferedSource source) throws IOException {
+        final long[] writes = {0};
+        final long start = System.nanoTime();
+        final long transferred;
+        try (BufferedSource in = source;
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            transferred = Utils.transferTo(in, out, n -> writes[0]++);
+        }
+        final long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        System.out.printf("%-30s %8d KiB/write  %6.1f ms between progress updates%n",
+                name,
+                transferred / writes[0] / 1024,
+                (double) elapsedMillis / writes[0]);
+    }
+
+    /**
+     * Extraction of a JDK-sized tree, the JDK running the benchmark, then promotion by a rename, in each durability mode.
+     */
+    @Test
+    public void durability_modes_extraction() throws Exception {
+        final Path archive = folder.resolve("jdk.tar.gz");
+        ArchiverUtils.createTarGzipFolder(Paths.get(System.getProperty("java.home")), archive);
+        final ArchiveUnpacker archiveUnpacker = new ArchiveUnpacker();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (Durability durability : Durability.values()) {
+                final Path extractFolder = folder.resolve("extract");
+                final Path installFolder = folder.resolve("install");
+                final long start = System.nanoTime();
+                try (FileSyncer fileSyncer = new FileSyncer(durability)) {
+                    archiveUnpacker.unTarGz(archive, extractFolder, ExtractionFilter.NONE, fileSyncer);
+                    fileSyncer.commit(extractFolder);
+                    Files.move(extractFolder, installFolder, StandardCopyOption.ATOMIC_MOVE);
+                    fileSyncer.committed(installFolder);
+                }
+                System.out.printf("%-30s %8d ms%n", "extraction " + durability, Duration.ofNanos(System.nanoTime() - start).toMillis());
+                FileUtils.deleteDirectory(installFolder.toFile());
+            }
+        }
+    }
+
+    private void measure(String name, Transfer transfer) throws Exception {
+        final long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        final long start = System.nanoTime();
+        final long transferred = transfer.run();
+        final long elapsed = System.nanoTime() - start;
+        final long cpu = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+
+        assertThat(transferred).isEqualTo(PAYLOAD_SIZE);
+        final double gigaBytes = transferred / (1024.0 * 1024 * 1024);
+        System.out.printf("%-30s %8.1f MB/s  %6.0f ms CPU/GB%n",
+                name,
+                transferred / (1024.0 * 1024) / (elapsed / 1e9),
+                cpu / 1e6 / gigaBytes);
+    }
+
+    /**
+     * An in-memory source standing for the socket, so that only the copy overhead is measured.
+     */
+    private static BufferedSource fakeNetworkSource() {
+        return fakeNetworkSource(PAYLOAD_SIZE, 0);
+    }
+
+    /**
+     * @param bytesPerSecond throttles the source like a slow link, 0 for no limit
+     */
+    private static BufferedSource fakeNetworkSource(long size, long bytesPerSecond) {
+        final Buffer chunk = new Buffer().write(new byte[64 * 1024]);
+        return Okio.buffer(new ForwardingSource(new Buffer()) {
+            private final long start = System.nanoTime();
+            private long remaining = size;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+                final long toRead = Math.min(Math.min(byteCount, remaining), chunk.size());
+                if (bytesPerSecond > 0) {
+                    final long aheadMillis = (size - remaining + toRead) * 1000 / bytesPerSecond - Duration.ofNanos(System.nanoTime() - start).toMillis();
+                    try {
+                        Thread.sleep(Math.max(0, aheadMillis));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                chunk.copyTo(sink, 0, toRead);
+                remaining -= toRead;
+                return toRead;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+        long run() throws Exception;
+    }
+}
@@ -0,0 +1,84 @@
+import io.github.terjouxanthony.adopt.openjdk.downloader.BufferPool;
+import io.github.terjouxanthony.adopt.openjdk.downloader.DownloadPipeline;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DownloadPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void should_give_back_every_buffer_when_the_writer_fails() throws Exception {
+        final BufferPool bufferPool = new BufferPool(1024, 4);
+        final Path file = Files.createFile(tempDir.resolve("download"));
+
+        try (FileChannel readOnly = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> new DownloadPipeline(bufferPool).transfer(new EndlessChannel(-1), readOnly, n -> {
+            })).isInstanceOf(NonWritableChannelException.class);
+        }
+
+        assertThat(bufferPool.getInUse()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_give_back_every_buffer_when_the_reader_fails() throws Exception {
+        final BufferPool bufferPool = new BufferPool(1024, 4);
+
+        try (FileChannel out = FileChannel.open(tempDir.resolve("download"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertThatThrownBy(() -> new DownloadPipeline(bufferPool).transfer(new EndlessChannel(10_000), out, n -> {
+            })).isInstanceOf(IOException.class).hasMessage("Connection reset");
+        }
+
+        assertThat(bufferPool.getInUse()).isEqualTo(0);
+    }
+
+    /**
+     * Endless source of bytes, which fails once it gave failAfter bytes, if positive.
+     */
+    private static class EndlessChannel implements ReadableByteChannel {
+        private final long failAfter;
+        private long read;
+        private boolean open = true;
+
+        EndlessChannel(long failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new IOException("Closed");
+            }
+            if (failAfter >= 0 && read >= failAfter) {
+                throw new IOException("Connection reset");
+            }
+            final int size = Math.min(dst.remaining(), 100);
+            dst.position(dst.position() + size);
+            read += size;
+            return size;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -1,22 +1,46 @@
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
 import io.github.terjouxanthony.adopt.openjdk.downloader.AdoptOpenJdkApi;
 import io.github.terjouxanthony.adopt.openjdk.downloader.ArchiveUnpacker;
+import io.github.terjouxanthony.adopt.openjdk.downloader.ExtractionFilter;
+import io.github.terjouxanthony.adopt.openjdk.downloader.FileSyncer;
 import io.github.terjouxanthony.adopt.openjdk.downloader.FileSystemHandler;
 import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester;
+import io.github.terjouxanthony.adopt.openjdk.downloader.HttpRequester.HttpStatusException;
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallDaemon;
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallDaemonClient;
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallLease;
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallManifest;
+import io.github.terjouxanthony.adopt.openjdk.downloader.InstallMetadataFile;
 import io.github.terjouxanthony.adopt.openjdk.downloader.JavaDownloader;
+import io.github.terjouxanthony.adopt.openjdk.downloader.JavaLockFile;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.Durability;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.InstallJavaParams;
 import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JavaInstallDescription;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.JlinkParams;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.ReleaseInfo;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.RetentionPolicy;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.VerificationMode;
+import io.github.terjouxanthony.adopt.openjdk.downloader.Model.VerificationResult;
+import io.github.terjouxanthony.adopt.openjdk.downloader.NotAvailableLocallyException;
 import okhttp3.Headers;
 import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.AfterAll;
@@ -28,18 +52,40 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -150,7 +196,10 @@ public class JavaDownloaderHighLevelTest {
         assertThat(allFiles).containsExactlyInAnyOrder(
                 expectedJreFolder.resolve("jdk-16-jre/lib/classlist").toFile(),
                 expectedJreFolder.resolve("jdk-16-jre/bin/java").toFile(),
-                expectedJreFolder.resolve("jdk-16-jre/bin/keytool").toFile()
+                expectedJreFolder.resolve("jdk-16-jre/bin/keytool").toFile(),
+                expectedJreFolder.resolve(".install-manifest.json").toFile(),
+                expectedJreFolder.resolve(".install-metadata.properties").toFile(),
+                expectedJreFolder.resolve(".install-last-used").toFile()
         );
     }
 
@@ -239,10 +288,753 @@ public class JavaDownloaderHighLevelTest {
         assertThat(allFiles).containsExactlyInAnyOrder(
                 expectedJreFolder.resolve("jdk-16-jre/lib/classlist").toFile(),
                 expectedJreFolder.resolve("jdk-16-jre/bin/java").toFile(),
-                expectedJreFolder.resolve("jdk-16-jre/bin/keytool").toFile()
+                expectedJreFolder.resolve("jdk-16-jre/bin/keytool").toFile(),
+                expectedJreFolder.resolve(".install-manifest.json").toFile(),
+                expectedJreFolder.resolve(".install-metadata.properties").toFile(),
+                expectedJreFolder.resolve(".install-last-used").toFile()
         );
     }
 
+    @Test
+    public void should_install_locked_release_without_metadata_request() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+        final Path lockFile = rootFolder.resolve(UUID.randomUUID() + "-java.lock.json");
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final InstallJavaParams params = InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .cleanExistingSameMajorVersion(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .lockFile(lockFile)
+                .build();
+        final JavaInstallDescription installation = javaDownloader.installJava(params);
+
+        final JsonNode lockedRelease = new ObjectMapper().readTree(lockFile.toFile()).path("releases").get(0);
+        assertThat(lockedRelease.path("requestedVersion").textValue()).isEqualTo("16");
+        assertThat(lockedRelease.path("releaseName").textValue()).isEqualTo("jdk-16.0.1+9");
+        assertThat(lockedRelease.path("checksum").textValue()).isEqualTo(checksum);
+
+        //when
+        FileUtils.deleteDirectory(installation.getInstallPath().toFile());
+        final JavaInstallDescription lockedInstallation = javaDownloader.installJava(params);
+        javaDownloader.installJava(params);
+
+        //then
+        assertThat(lockedInstallation).isEqualTo(installation);
+        verify(httpRequester, times(1)).httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any());
+        verify(httpRequester, times(2)).httpGet(eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any());
+
+        assertThat(javaDownloader.updateLock(params).getReleaseName()).isEqualTo("jdk-16.0.1+9");
+        verify(httpRequester, times(2)).httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any());
+        Files.delete(lockFile);
+    }
+
+    @Test
+    public void should_only_use_local_installs_in_offline_mode() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .cleanExistingSameMajorVersion(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .offline(false)
+                .build());
+
+        //when
+        final JavaInstallDescription offlineInstallation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .downloadLatest(true)
+                .cleanExistingSameMajorVersion(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .offline(true)
+                .build());
+
+        //then
+        assertThat(offlineInstallation).isEqualTo(installation);
+        assertThatThrownBy(() -> javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(17)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .offline(true)
+                .build()))
+                .isInstanceOf(NotAvailableLocallyException.class)
+                .hasMessageContaining("jre 17 os linux arch x64 is not available locally");
+
+        verify(httpRequester, times(2)).httpGet(any(), any(), any());
+    }
+
+    @Test
+    public void should_import_bundle_and_install_offline_from_it() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path bundleFolder = testFolder.resolve("bundle");
+        Files.createDirectories(bundleFolder);
+        final JavaLockFile bundleIndex = new JavaLockFile();
+        for (String arch : Arrays.asList("x64", "aarch64")) {
+            final String packageName = "OpenJDK16U-jre_" + arch + "_linux_hotspot_16.0.1_9.tar.gz";
+            ArchiverUtils.createTarGzipFolder(jreDir, bundleFolder.resolve(packageName));
+            final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(bundleFolder.resolve(packageName)));
+            bundleIndex.put(JavaLockFile.Key.of(Model.ImageType.JRE, "linux", arch, "16"),
+                    new ReleaseInfo(checksum, packageName, "https://example.org/" + packageName, "jdk-16.0.1+9", 0, "2021-04-23T09:10:06Z"));
+        }
+        bundleIndex.write(bundleFolder.resolve(JavaDownloader.BUNDLE_INDEX_FILE_NAME));
+        final Path javaDownloaderDir = testFolder.resolve("java");
+
+        //when
+        final List<Path> installs = javaDownloader.importBundle(bundleFolder, javaDownloaderDir, 2);
+        final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("aarch64")
+                .os("linux")
+                .javaVersion(16)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(javaDownloaderDir)
+                .offline(true)
+                .build());
+
+        //then
+        assertThat(installs).containsExactly(
+                javaDownloaderDir.resolve("jre/16/linux_aarch64/jdk-16.0.1+9--2021-04-23T09-10-06Z--linux_aarch64"),
+                javaDownloaderDir.resolve("jre/16/linux_x64/jdk-16.0.1+9--2021-04-23T09-10-06Z--linux_x64"));
+        assertThat(installation.getInstallPath()).isEqualTo(installs.get(0));
+        assertThat(installation.getJdkHomePath().resolve("bin/java")).exists();
+        assertThat(javaDownloader.importBundle(bundleFolder, javaDownloaderDir, 2)).isEqualTo(installs);
+        assertThat(bundleFolder.resolve("OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz")).exists();
+        verifyNoMoreInteractions(httpRequester);
+
+        //when the index names lead out of the bundle
+        final JavaLockFile escapingIndex = new JavaLockFile();
+        escapingIndex.put(JavaLockFile.Key.of(Model.ImageType.JRE, "linux", "x64", "16"),
+                new ReleaseInfo("checksum", "../outside.tar.gz", "https://example.org/outside.tar.gz", "jdk-16.0.1+9", 0, "2021-04-23T09:10:06Z"));
+        escapingIndex.write(bundleFolder.resolve(JavaDownloader.BUNDLE_INDEX_FILE_NAME));
+
+        //then
+        assertThatThrownBy(() -> javaDownloader.importBundle(bundleFolder, javaDownloaderDir, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("bad package name '../outside.tar.gz'");
+    }
+
+    @Test
+    public void should_restore_exported_snapshot_without_downloading() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final Path sourceDir = testFolder.resolve("source");
+        final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(sourceDir)
+                .build());
+        Files.createSymbolicLink(installation.getJdkHomePath().resolve("bin/jre-java"), installation.getJdkHomePath().resolve("bin/java").getFileName());
+        final Path snapshotFile = testFolder.resolve("snapshot.tar");
+
+        //when
+        javaDownloader.exportSnapshot(sourceDir, javaDownloader.listInstalls(sourceDir), snapshotFile);
+        final Path targetDir = testFolder.resolve("target");
+        final List<Path> restoredInstalls = javaDownloader.restoreSnapshot(snapshotFile, targetDir);
+
+        //then
+        final JavaInstallDescription restoredInstallation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(targetDir)
+                .offline(true)
+                .build());
+        assertThat(restoredInstalls).containsExactly(restoredInstallation.getInstallPath());
+        assertThat(targetDir.relativize(restoredInstallation.getInstallPath())).isEqualTo(sourceDir.relativize(installation.getInstallPath()));
+        assertThat(Files.readSymbolicLink(restoredInstallation.getJdkHomePath().resolve("bin/jre-java")).toString()).isEqualTo("java");
+        assertThat(javaDownloader.verifyInstall(restoredInstallation.getInstallPath(), VerificationMode.SIZE_AND_MTIME).isValid()).isTrue();
+        assertThat(javaDownloader.restoreSnapshot(snapshotFile, targetDir)).isEqualTo(restoredInstalls);
+        verify(httpRequester, times(2)).httpGet(any(), any(), any());
+    }
+
+    @Test
+    public void should_refuse_snapshot_entries_written_through_symlinks_pointing_outside() throws Exception {
+        //given
+        final Path javaDownloaderDir = testFolder.resolve("java");
+        Files.createDirectories(javaDownloaderDir);
+        final Path snapshotFile = testFolder.resolve("evil-snapshot.tar.gz");
+        writeTarGz(snapshotFile,
+                tarEntry("a/up", TarConstants.LF_SYMLINK, 0777, "..", null), // the staging folder, inside
+                tarEntry("esc", TarConstants.LF_SYMLINK, 0777, "a/up/..", null), // looks like "a", is the parent of the staging folder
+                tarEntry("esc/x", TarConstants.LF_NORMAL, 0644, null, "evil"));
+
+        //when
+        assertThatThrownBy(() -> javaDownloader.restoreSnapshot(snapshotFile, javaDownloaderDir))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("esc/x");
+
+        //then
+        assertThat(javaDownloaderDir.resolve("x")).doesNotExist();
+    }
+
+    @Test
+    public void should_copy_install_from_shared_cache_instead_of_downloading() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final Path sharedDir = testFolder.resolve("shared");
+        final JavaInstallDescription sharedInstallation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(sharedDir)
+                .build());
+        final Path localDir = testFolder.resolve("local");
+        final InstallJavaParams.InstallJavaParamsBuilder params = InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(localDir)
+                .sharedCacheDirs(Arrays.asList(testFolder.resolve("empty-shared"), sharedDir));
+
+        //when
+        final JavaInstallDescription installation = javaDownloader.installJava(params.downloadLatest(false).build());
+        FileUtils.deleteDirectory(installation.getInstallPath().toFile());
+        final JavaInstallDescription latestInstallation = javaDownloader.installJava(params.downloadLatest(true).build());
+
+        //then
+        assertThat(localDir.relativize(installation.getInstallPath())).isEqualTo(sharedDir.relativize(sharedInstallation.getInstallPath()));
+        assertThat(latestInstallation).isEqualTo(installation);
+        assertThat(installation.getJdkHomePath().resolve("bin/java")).exists();
+        assertThat(javaDownloader.verifyInstall(installation.getInstallPath(), VerificationMode.SIZE_AND_MTIME).isValid()).isTrue();
+        verify(httpRequester, times(2)).httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any());
+        verify(httpRequester, times(1)).httpGet(eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any());
+    }
+
+    @Test
+    public void should_evict_least_recently_used_installs_except_pinned_leased_and_locked_ones() throws Exception {
+        //given
+        final Instant tenDaysAgo = Instant.now().minus(Duration.ofDays(10));
+        final Path idleInstall = makeInstall(testFolder, "jre/16/linux_x64", "jdk-16.0.1+9", tenDaysAgo);
+        final Path pinnedInstall = makeInstall(testFolder, "jre/17/linux_x64", "jdk-17.0.1+12", tenDaysAgo);
+        final Path leasedInstall = makeInstall(testFolder, "jdk/11/linux_x64", "jdk-11.0.12+7", tenDaysAgo);
+        final Path lockedInstall = makeInstall(testFolder, "jre/18/linux_x64", "jdk-18+36", tenDaysAgo);
+        final Path idleJlinkRuntime = testFolder.resolve("jlink/jdk-17.0.1+12~0123456789ab--linux_x64");
+        Files.createDirectories(idleJlinkRuntime.resolve("bin"));
+        Files.write(idleJlinkRuntime.resolve("bin/java"), new byte[1024]);
+        Files.setLastModifiedTime(idleJlinkRuntime, FileTime.from(tenDaysAgo));
+        javaDownloader.pinInstall(pinnedInstall);
+        final InstallLease lease = javaDownloader.leaseInstall(leasedInstall);
+
+        final Path lockFile = testFolder.resolve("java.lock.json");
+        final JavaLockFile javaLockFile = new JavaLockFile();
+        javaLockFile.put(JavaLockFile.Key.of(Model.ImageType.JRE, "linux", "x64", "18"),
+                new ReleaseInfo("checksum", "package.tar.gz", "https://example.org/package.tar.gz", "jdk-18+36", 0, "2021-04-23T09:10:06Z"));
+        javaLockFile.write(lockFile);
+
+        //when
+        final JavaInstallDescription usedInstallation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .fullJavaReleaseName("jdk-18+36")
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .offline(true)
+                .build());
+        final List<Path> evictedIdleInstalls = javaDownloader.applyRetention(testFolder, RetentionPolicy.builder()
+                .maxIdleTime(Duration.ofDays(1))
+                .build());
+        final List<Path> evictedOverBudgetInstalls = javaDownloader.applyRetention(testFolder, RetentionPolicy.builder()
+                .maxTotalSizeBytes(0L)
+                .lockFiles(Collections.singletonList(lockFile))
+                .build());
+        lease.close();
+        final List<Path> evictedUnleasedInstalls = javaDownloader.applyRetention(testFolder, RetentionPolicy.builder()
+                .maxTotalSizeBytes(0L)
+                .lockFiles(Collections.singletonList(lockFile))
+                .build());
+
+        //then
+        assertThat(usedInstallation.getInstallPath()).isEqualTo(lockedInstall);
+        assertThat(evictedIdleInstalls).containsExactlyInAnyOrder(idleInstall, idleJlinkRuntime);
+        assertThat(evictedOverBudgetInstalls).isEmpty();
+        assertThat(evictedUnleasedInstalls).containsExactly(leasedInstall);
+        assertThat(javaDownloader.listInstalls(testFolder)).containsExactlyInAnyOrder(pinnedInstall, lockedInstall);
+        verifyNoMoreInteractions(httpRequester);
+    }
+
+    @Test
+    public void should_make_jlink_runtime_once_and_serve_it_from_cache() throws Exception {
+        //given
+        final Path hostJavaHome = Paths.get(System.getProperty("java.home"));
+        assumeTrue(System.getProperty("os.name").startsWith("Linux") && System.getProperty("os.arch").equals("amd64")
+                && Files.isDirectory(hostJavaHome.resolve("jmods")), "needs a linux x64 JDK with jmods");
+        final Path installFolder = testFolder.resolve("jdk/17/linux_x64/jdk-17.0.1+12--2021-10-20T10-10-10Z--linux_x64");
+        Files.createDirectories(installFolder);
+        Files.createSymbolicLink(installFolder.resolve("jdk-17.0.1+12"), hostJavaHome);
+
+        final JlinkParams params = JlinkParams.builder()
+                .jdkParams(InstallJavaParams.builder()
+                        .arch("x64")
+                        .os("linux")
+                        .fullJavaReleaseName("jdk-17.0.1+12")
+                        .imageType(Model.ImageType.JDK)
+                        .javaDownloaderDir(testFolder)
+                        .offline(true)
+                        .build())
+                .modules(Arrays.asList("java.logging", "java.base"))
+                .compress("0")
+                .build();
+
+        //when
+        final JavaInstallDescription runtime = javaDownloader.installJlinkRuntime(params);
+        final FileTime madeAt = Files.getLastModifiedTime(runtime.getInstallPath());
+        final JavaInstallDescription cachedRuntime = javaDownloader.installJlinkRuntime(params);
+
+        //then
+        assertThat(runtime.getInstallPath()).isEqualTo(testFolder.resolve("jlink/jdk-17.0.1+12~" + params.fingerprint() + "--linux_x64"));
+        assertThat(runtime.getJdkHomePath().resolve("bin/java")).exists();
+        assertThat(runtime.getJdkHomePath().resolve("jmods")).doesNotExist();
+        assertThat(new String(Files.readAllBytes(runtime.getJdkHomePath().resolve("release")), StandardCharsets.UTF_8))
+                .contains("MODULES=\"java.base java.logging\"");
+        assertThat(cachedRuntime).isEqualTo(runtime);
+        assertThat(Files.getLastModifiedTime(cachedRuntime.getInstallPath())).isEqualTo(madeAt);
+        verifyNoMoreInteractions(httpRequester);
+    }
+
+    @Test
+    public void should_dump_cds_archives_after_install_and_reinstall_when_missing() throws Exception {
+        //given
+        assumeTrue(System.getProperty("os.name").startsWith("Linux") && System.getProperty("os.arch").equals("amd64"), "needs a linux x64 machine");
+        final Path jreDir = makeJreDir(testFolder, 16);
+        // stands for the java binary: writes the archive given by -XX:SharedArchiveFile, else the default one
+        Files.write(jreDir.resolve("bin/java"), Arrays.asList(
+                "#!/bin/sh",
+                "archive=\"$(dirname \"$0\")/../lib/server/classes.jsa\"",
+                "for arg in \"$@\"; do case \"$arg\" in -XX:SharedArchiveFile=*) archive=\"${arg#-XX:SharedArchiveFile=}\";; esac; done",
+                "mkdir -p \"$(dirname \"$archive\")\" && echo archive > \"$archive\""));
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+        final Path classList = testFolder.resolve("classlist");
+        Files.write(classList, Collections.singletonList("java/lang/Object"));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final InstallJavaParams params = InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .downloadLatest(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .generateCdsArchive(true)
+                .cdsClassList(classList)
+                .build();
+
+        //when
+        final JavaInstallDescription installationWithoutCds = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .downloadLatest(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .build());
+        final JavaInstallDescription installation = javaDownloader.installJava(params);
+        final List<String> cdsArchives = new InstallMetadataFile().read(installation.getInstallPath()).get().getCdsArchives();
+        final JavaInstallDescription foundInstallation = javaDownloader.installJava(params);
+        Files.delete(installation.getJdkHomePath().resolve("lib/app-cds.jsa"));
+        final JavaInstallDescription reinstallation = javaDownloader.installJava(params);
+
+        //then
+        assertThat(installation).isEqualTo(installationWithoutCds);
+        assertThat(cdsArchives).containsExactly("jdk-16-jre/lib/server/classes.jsa", "jdk-16-jre/lib/app-cds.jsa");
+        assertThat(foundInstallation).isEqualTo(installation);
+        assertThat(reinstallation).isEqualTo(installation);
+        assertThat(reinstallation.getJdkHomePath().resolve("lib/app-cds.jsa")).exists();
+        verify(httpRequester, times(3)).httpGet(eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any());
+    }
+
+    @Test
+    public void should_share_one_install_between_concurrent_identical_calls() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+        final CountDownLatch requestStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRequest = new CountDownLatch(1);
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> {
+                    requestStarted.countDown();
+                    releaseRequest.await();
+                    return mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum));
+                });
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final Callable<JavaInstallDescription> install = () -> javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .build());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            //when
+            final Future<JavaInstallDescription> first = executor.submit(install);
+            assertThat(requestStarted.await(10, TimeUnit.SECONDS)).isTrue();
+            final List<Thread> followerThreads = new CopyOnWriteArrayList<>();
+            final List<Future<JavaInstallDescription>> followers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                followers.add(executor.submit(() -> {
+                    followerThreads.add(Thread.currentThread());
+                    return install.call();
+                }));
+            }
+            while (followerThreads.size() < 3 || !followerThreads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+                Thread.sleep(10);
+            }
+            releaseRequest.countDown();
+
+            //then
+            final JavaInstallDescription installation = first.get(10, TimeUnit.SECONDS);
+            for (Future<JavaInstallDescription> follower : followers) {
+                assertThat(follower.get(10, TimeUnit.SECONDS)).isEqualTo(installation);
+            }
+            verify(httpRequester, times(1)).httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any());
+            verify(httpRequester, times(1)).httpGet(eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any());
+        } finally {
+            releaseRequest.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_serve_installs_to_daemon_clients() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final Path daemonDir = testFolder.resolve("daemon");
+        try (InstallDaemon daemon = InstallDaemon.start(javaDownloader, daemonDir, 0)) {
+            final InstallDaemonClient client = new InstallDaemonClient(daemon.getPort());
+            final InstallJavaParams params = InstallJavaParams.builder()
+                    .arch("x64")
+                    .os("linux")
+                    .javaVersion(16)
+                    .imageType(Model.ImageType.JRE)
+                    .javaDownloaderDir(testFolder.resolve("ignored"))
+                    .build();
+
+            //when
+            final JavaInstallDescription installation = client.installJava(params);
+            final JavaInstallDescription sameInstallation = client.installJava(params);
+            final List<Path> installs = client.listInstalls();
+
+            //then
+            assertThat(installation.getInstallPath()).startsWith(daemonDir.toAbsolutePath());
+            assertThat(installation.getJdkHomePath()).isDirectory();
+            assertThat(sameInstallation).isEqualTo(installation);
+            assertThat(installs).containsExactly(installation.getInstallPath());
+            assertThat(testFolder.resolve("ignored")).doesNotExist();
+            verify(httpRequester, times(1)).httpGet(eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any());
+
+            assertThatThrownBy(() -> client.installJava(InstallJavaParams.builder()
+                    .arch("x64")
+                    .os("linux")
+                    .javaVersion(11)
+                    .offline(true)
+                    .build()))
+                    .isInstanceOf(NotAvailableLocallyException.class);
+        }
+    }
+
+    @Test
+    public void should_forward_install_params_to_daemon_and_refuse_invalid_requests() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        try (InstallDaemon daemon = InstallDaemon.start(javaDownloader, testFolder.resolve("daemon"), 0)) {
+            final InstallDaemonClient client = new InstallDaemonClient(daemon.getPort());
+            final String installUrl = "http://127.0.0.1:" + daemon.getPort() + "/install";
+            final String validBody = "{\"os\": \"linux\", \"arch\": \"x64\", \"javaVersion\": 16, \"offline\": true}";
+            final OkHttpClient httpClient = new OkHttpClient();
+
+            //when
+            final JavaInstallDescription trimmedInstallation = client.installJava(InstallJavaParams.builder()
+                    .arch("x64")
+                    .os("linux")
+                    .javaVersion(16)
+                    .excludePaths(Collections.singletonList("man"))
+                    .build());
+
+            //then
+            assertThat(trimmedInstallation.getInstallPath().getFileName().toString()).startsWith("jdk-16.0.1+9~");
+            assertThat(postStatus(httpClient, installUrl, "127.0.0.1", "text/plain", validBody)).isEqualTo(415);
+            assertThat(postStatus(httpClient, installUrl, "attacker.example.org", "application/json", validBody)).isEqualTo(403);
+            assertThat(postStatus(httpClient, installUrl, "localhost", "application/json", "[]")).isEqualTo(400);
+            assertThat(postStatus(httpClient, installUrl, "localhost", "application/json", "{\"os\": 1, \"arch\": \"x64\", \"javaVersion\": 16}")).isEqualTo(400);
+            assertThat(postStatus(httpClient, installUrl, "localhost", "application/json", "{\"os\": \"linux\", \"arch\": \"x64\", \"javaVersion\": 16, \"lockFile\": \"/etc/passwd\"}")).isEqualTo(400);
+            assertThatThrownBy(() -> client.installJava(InstallJavaParams.builder()
+                    .arch("x64")
+                    .os("linux")
+                    .javaVersion(16)
+                    .lockFile(testFolder.resolve("java.lock.json"))
+                    .build()))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void should_report_non_json_errors_of_the_daemon_port_as_http_status() throws Exception {
+        //given
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            final byte[] page = "<html><body>Not Found</body></html>".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html");
+            exchange.sendResponseHeaders(404, page.length);
+            exchange.getResponseBody().write(page);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            final InstallDaemonClient client = new InstallDaemonClient(server.getAddress().getPort());
+
+            //when then
+            assertThatThrownBy(() -> client.findLatestRelease("16"))
+                    .isInstanceOf(HttpStatusException.class)
+                    .hasMessageContaining("Error 404")
+                    .hasMessageContaining("Not Found");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static int postStatus(OkHttpClient httpClient, String url, String host, String contentType, String body) throws IOException {
+        try (Response response = httpClient.newCall(new Request.Builder()
+                .url(url)
+                .header("Host", host)
+                .post(RequestBody.create(body.getBytes(StandardCharsets.UTF_8), MediaType.get(contentType)))
+                .build()).execute()) {
+            return response.code();
+        }
+    }
+
+    @Test
+    public void should_flush_every_extracted_file_in_batched_and_strict_durability_modes() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        for (int i = 0; i < FileSyncer.BATCH_SIZE * 2 + 1; i++) {
+            Files.write(jreDir.resolve("lib").resolve("module-" + i), ("module " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        for (Durability durability : Arrays.asList(Durability.BATCHED, Durability.STRICT)) {
+            //when
+            final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
+                    .arch("x64")
+                    .os("linux")
+                    .javaVersion(16)
+                    .imageType(Model.ImageType.JRE)
+                    .durability(durability)
+                    .javaDownloaderDir(testFolder.resolve(durability.name()))
+                    .build());
+
+            //then
+            assertThat(javaDownloader.verifyInstall(installation.getInstallPath(), VerificationMode.FULL).isValid()).isTrue();
+            assertThat(installation.getJdkHomePath().resolve("lib").resolve("module-" + FileSyncer.BATCH_SIZE * 2)).hasContent("module " + FileSyncer.BATCH_SIZE * 2);
+        }
+    }
+
+    @Test
+    public void should_keep_links_and_permissions_of_tar_entries_when_preserving_tar_metadata() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"), "needs a POSIX file system");
+
+        //given
+        Files.createDirectories(testFolder);
+        final Path archive = testFolder.resolve("jre.tar.gz");
+        writeTarGz(archive,
+                tarEntry("jdk-16-jre/", TarConstants.LF_DIR, 0755, null, null),
+                tarEntry("jdk-16-jre/bin/java", TarConstants.LF_NORMAL, 0755, null, "#!/bin/sh"),
+                tarEntry("jdk-16-jre/lib/modules", TarConstants.LF_NORMAL, 0444, null, "modules"),
+                tarEntry("jdk-16-jre/lib/modules-copy", TarConstants.LF_LINK, 0444, "jdk-16-jre/lib/modules", null),
+                tarEntry("jdk-16-jre/lib/default", TarConstants.LF_SYMLINK, 0777, "modules", null));
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(archive));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(archive));
+
+        //when
+        final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .imageType(Model.ImageType.JRE)
+                .preserveTarMetadata(true)
+                .javaDownloaderDir(testFolder.resolve("install"))
+                .build());
+
+        //then
+        final Path javaHome = installation.getJdkHomePath();
+        assertThat(Files.getPosixFilePermissions(javaHome.resolve("bin/java"))).isEqualTo(PosixFilePermissions.fromString("rwxr-xr-x"));
+        assertThat(Files.getPosixFilePermissions(javaHome.resolve("lib/modules"))).isEqualTo(PosixFilePermissions.fromString("r--r--r--"));
+        assertThat(Files.readAttributes(javaHome.resolve("lib/modules-copy"), BasicFileAttributes.class).fileKey())
+                .isEqualTo(Files.readAttributes(javaHome.resolve("lib/modules"), BasicFileAttributes.class).fileKey());
+        assertThat(Files.isSymbolicLink(javaHome.resolve("lib/default"))).isTrue();
+        assertThat(Files.readSymbolicLink(javaHome.resolve("lib/default")).toString()).isEqualTo("modules");
+        assertThat(javaDownloader.verifyInstall(installation.getInstallPath(), VerificationMode.FULL).isValid()).isTrue();
+    }
+
+    @Test
+    public void should_reinstall_install_made_without_tar_metadata_when_preserving_it() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"), "needs a POSIX file system");
+
+        //given
+        Files.createDirectories(testFolder);
+        final Path archive = testFolder.resolve("jre.tar.gz");
+        writeTarGz(archive,
+                tarEntry("jdk-16-jre/", TarConstants.LF_DIR, 0755, null, null),
+                tarEntry("jdk-16-jre/bin/java", TarConstants.LF_NORMAL, 0755, null, "#!/bin/sh"),
+                tarEntry("jdk-16-jre/lib/default", TarConstants.LF_SYMLINK, 0777, "../bin/java", null));
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(archive));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(archive));
+
+        final InstallJavaParams.InstallJavaParamsBuilder params = InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .downloadLatest(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder.resolve("install"));
+
+        //when
+        final JavaInstallDescription plainInstallation = javaDownloader.installJava(params.build());
+        final boolean linkedBefore = Files.isSymbolicLink(plainInstallation.getJdkHomePath().resolve("lib/default"));
+        final JavaInstallDescription preservingInstallation = javaDownloader.installJava(params.preserveTarMetadata(true).build());
+        final JavaInstallDescription foundInstallation = javaDownloader.installJava(params.preserveTarMetadata(true).build());
+
+        //then
+        assertThat(linkedBefore).isFalse();
+        assertThat(preservingInstallation).isEqualTo(plainInstallation);
+        assertThat(foundInstallation).isEqualTo(preservingInstallation);
+        assertThat(Files.isSymbolicLink(preservingInstallation.getJdkHomePath().resolve("lib/default"))).isTrue();
+        verify(httpRequester, times(2)).httpGet(eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any());
+    }
+
+    @Test
+    public void should_refuse_tar_entries_written_through_symlinks_pointing_outside() throws Exception {
+        //given
+        Files.createDirectories(testFolder);
+        final Path archive = testFolder.resolve("evil.tar.gz");
+        writeTarGz(archive,
+                tarEntry("jdk/deep/up", TarConstants.LF_SYMLINK, 0777, "..", null), // jdk, inside
+                tarEntry("jdk/escape", TarConstants.LF_SYMLINK, 0777, "deep/up/../..", null), // looks like jdk, is the parent of the target
+                tarEntry("jdk/escape/outside/file", TarConstants.LF_NORMAL, 0644, null, "evil"));
+        final Path target = testFolder.resolve("target");
+
+        //when
+        assertThatThrownBy(() -> archiveUnpacker.unTarGz(archive, target, ExtractionFilter.NONE, FileSyncer.none(), true))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("jdk/escape/outside/file");
+
+        //then
+        assertThat(testFolder.resolve("outside")).doesNotExist();
+    }
+
     @Test
     public void should_clean_old_installed_jre_for_same_version() throws Exception {
         //given
@@ -287,6 +1079,10 @@ public class JavaDownloaderHighLevelTest {
                 .javaDownloaderDir(testFolder)
                 .build());
 
+        // work folder of an install in progress in another process
+        final Path inFlightFolder = testFolder.resolve("jre/16/windows_x64/jdk-16.0.2+7--2021-07-23T09-10-06Z--windows_x64_temporary-" + UUID.randomUUID());
+        Files.createDirectories(inFlightFolder);
+
         final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
                 .arch("x64")
                 .os("windows")
@@ -314,14 +1110,353 @@ public class JavaDownloaderHighLevelTest {
         verifyNoMoreInteractions(httpRequester);
 
         assertThat(Files.exists(expectedJreFolder)).isTrue();
+        assertThat(inFlightFolder).isEmptyDirectory();
+        Files.delete(inFlightFolder);
         FileUtils.deleteDirectory(jreDir.toFile());
         FileUtils.deleteQuietly(zippedJreDir.toFile());
         final Collection<File> allFiles = FileUtils.listFiles(testFolder.toFile(), null, true);
         assertThat(allFiles).containsExactlyInAnyOrder(
                 expectedJreFolder.resolve("jdk-16-jre/lib/classlist").toFile(),
                 expectedJreFolder.resolve("jdk-16-jre/bin/java").toFile(),
-                expectedJreFolder.resolve("jdk-16-jre/bin/keytool").toFile()
+                expectedJreFolder.resolve("jdk-16-jre/bin/keytool").toFile(),
+                expectedJreFolder.resolve(".install-manifest.json").toFile(),
+                expectedJreFolder.resolve(".install-metadata.properties").toFile(),
+                expectedJreFolder.resolve(".install-last-used").toFile()
+        );
+    }
+
+    @Test
+    public void should_skip_excluded_paths_and_not_reuse_trimmed_install_for_full_install() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir));
+        FileUtils.deleteDirectory(jreDir.toFile());
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("linux_feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final InstallJavaParams.InstallJavaParamsBuilder params = InstallJavaParams.builder()
+                .arch("x64")
+                .os("linux")
+                .javaVersion(16)
+                .downloadLatest(false)
+                .cleanExistingSameMajorVersion(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder);
+
+        //when
+        final JavaInstallDescription trimmed = javaDownloader.installJava(params.excludePaths(Arrays.asList("lib", "bin/keytool", "legal/a,b")).build());
+        final JavaInstallDescription trimmedAgain = javaDownloader.installJava(params.excludePaths(Arrays.asList("legal/a,b", "bin/keytool", "lib")).build());
+        final JavaInstallDescription full = javaDownloader.installJava(params.excludePaths(Collections.emptyList()).build());
+
+        //then
+        assertThat(trimmed.getInstallPath().getFileName().toString()).matches("jdk-16\\.0\\.1\\+9~[0-9a-f]{12}--2021-04-23T09-10-06Z--linux_x64");
+        assertThat(trimmedAgain).isEqualTo(trimmed);
+        assertThat(full.getInstallPath()).isEqualTo(testFolder.resolve("jre/16/linux_x64/jdk-16.0.1+9--2021-04-23T09-10-06Z--linux_x64"));
+
+        verify(httpRequester, times(2)).httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any());
+        verify(httpRequester, times(2)).httpGet(eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any());
+
+        FileUtils.deleteQuietly(tarGzdJreDir.toFile());
+        final Collection<File> trimmedFiles = FileUtils.listFiles(trimmed.getInstallPath().toFile(), null, true);
+        assertThat(trimmedFiles).containsExactlyInAnyOrder(
+                trimmed.getJdkHomePath().resolve("bin/java").toFile(),
+                trimmed.getInstallPath().resolve(".install-manifest.json").toFile(),
+                trimmed.getInstallPath().resolve(".install-metadata.properties").toFile(),
+                trimmed.getInstallPath().resolve(".install-last-used").toFile()
         );
+        assertThat(full.getJdkHomePath().resolve("lib/classlist")).exists();
+        assertThat(new InstallMetadataFile().readExtractionFilter(trimmed.getInstallPath()).getExcludes())
+                .containsExactly("bin/keytool", "legal/a,b", "lib");
+
+        assertThatThrownBy(() -> javaDownloader.installJava(params.excludePaths(Collections.singletonList("bin")).build()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("removes bin/java");
+    }
+
+    @Test
+    public void should_clean_old_installed_jre_in_background() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path zippedJreDir = addExtension(jreDir, ".zip");
+        ArchiverUtils.makeZip(jreDir, zippedJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(zippedJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://api.adoptopenjdk.net/v3/assets/release_name/adoptopenjdk/jdk-16+36"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("release_info.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_windows_hotspot_16.0.1_9.zip"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(zippedJreDir));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16%2B36/OpenJDK16-jre_x64_windows_hotspot_16_36.zip"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(zippedJreDir));
+
+        javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("windows")
+                .fullJavaReleaseName("jdk-16+36")
+                .downloadLatest(false)
+                .cleanExistingSameMajorVersion(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .build());
+
+        //when
+        final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("windows")
+                .javaVersion(16)
+                .downloadLatest(true)
+                .cleanExistingSameMajorVersion(true)
+                .deferredCleanup(true)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .build());
+
+        //then
+        final Path expectedJreFolder = testFolder.resolve("jre/16/windows_x64/jdk-16.0.1+9--2021-04-23T09-10-06Z--windows_x64");
+        assertThat(installation.getInstallPath()).isEqualTo(expectedJreFolder);
+        assertThat(javaDownloader.awaitBackgroundCleanup(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(testFolder.resolve(".trash")).isEmptyDirectory();
+        assertThat(testFolder.resolve("jre/16/windows_x64").toFile().list()).containsExactly(expectedJreFolder.getFileName().toString());
+    }
+
+    @Test
+    public void should_collect_work_folders_left_by_crashed_installs_after_a_grace_period() throws Exception {
+        //given
+        final Path osArchFolder = testFolder.resolve("jre/16/linux_x64");
+        final Path staleTemporary = osArchFolder.resolve("jdk-16.0.1+9--2021-04-23T09-10-06Z--linux_x64_temporary-" + UUID.randomUUID());
+        final Path staleReplaced = osArchFolder.resolve("jdk-16+36--2021-04-23T09-10-06Z--linux_x64_replaced-" + UUID.randomUUID());
+        final Path inFlightTemporary = osArchFolder.resolve("jdk-16.0.2+7--2021-07-23T09-10-06Z--linux_x64_temporary-" + UUID.randomUUID());
+        final Path staleJlinkTemporary = testFolder.resolve("jlink/jdk-17.0.1+12~0123456789ab--linux_x64_temporary-" + UUID.randomUUID());
+        for (Path folder : Arrays.asList(staleTemporary, staleReplaced, inFlightTemporary, staleJlinkTemporary)) {
+            Files.createDirectories(folder.resolve("bin"));
+            Files.write(folder.resolve("bin/java"), "java".getBytes(StandardCharsets.UTF_8));
+        }
+        final FileTime crashTime = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+        Files.setLastModifiedTime(staleTemporary, crashTime);
+        Files.setLastModifiedTime(staleReplaced, crashTime);
+        Files.setLastModifiedTime(staleJlinkTemporary, crashTime);
+
+        //when
+        javaDownloader.applyRetention(testFolder, RetentionPolicy.builder().build());
+
+        //then
+        assertThat(javaDownloader.awaitBackgroundCleanup(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(osArchFolder.toFile().list()).containsExactly(inFlightTemporary.getFileName().toString());
+        assertThat(testFolder.resolve("jlink")).isEmptyDirectory();
+        assertThat(testFolder.resolve(".trash")).isEmptyDirectory();
+    }
+
+    @Test
+    public void should_detect_tampered_install() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path zippedJreDir = addExtension(jreDir, ".zip");
+        ArchiverUtils.makeZip(jreDir, zippedJreDir);
+        final String checksum = DigestUtils.sha256Hex(Files.readAllBytes(zippedJreDir));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(updateCheckSum(readFile("feature_releases.json"), checksum)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_windows_hotspot_16.0.1_9.zip"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(zippedJreDir));
+
+        final JavaInstallDescription installation = javaDownloader.installJava(InstallJavaParams.builder()
+                .arch("x64")
+                .os("windows")
+                .javaVersion(16)
+                .downloadLatest(false)
+                .cleanExistingSameMajorVersion(false)
+                .imageType(Model.ImageType.JRE)
+                .javaDownloaderDir(testFolder)
+                .build());
+
+        assertThat(javaDownloader.verifyInstall(installation.getInstallPath(), VerificationMode.FULL).isValid()).isTrue();
+        assertThat(javaDownloader.verifyAllInstalls(testFolder, VerificationMode.SIZE_AND_MTIME))
+                .extracting(VerificationResult::isValid)
+                .containsExactly(true);
+
+        //when
+        Files.write(installation.getJdkHomePath().resolve("bin/java"), "tampered".getBytes(StandardCharsets.UTF_8));
+
+        //then
+        final VerificationResult fullResult = javaDownloader.verifyInstall(installation.getInstallPath(), VerificationMode.FULL);
+        assertThat(fullResult.isValid()).isFalse();
+        assertThat(fullResult.getErrors()).hasSize(1).allMatch(error -> error.contains("jdk-16-jre/bin/java"));
+        assertThat(javaDownloader.verifyInstall(installation.getInstallPath(), VerificationMode.SIZE_AND_MTIME).isValid()).isFalse();
+
+        //when a manifest entry points outside of the install
+        final Path manifestFile = installation.getInstallPath().resolve(InstallManifest.MANIFEST_FILE_NAME);
+        final ObjectNode manifest = (ObjectNode) new ObjectMapper().readTree(manifestFile.toFile());
+        ((ArrayNode) manifest.get("files")).addObject()
+                .put("path", "../../outside")
+                .put("size", 0)
+                .put("lastModified", 0)
+                .put("sha256", "");
+        Files.write(manifestFile, new ObjectMapper().writeValueAsBytes(manifest));
+
+        //then
+        assertThat(javaDownloader.verifyInstall(installation.getInstallPath(), VerificationMode.FULL).getErrors())
+                .anyMatch(error -> error.contains("../../outside") && error.contains("outside of the install"));
+    }
+
+    @Test
+    public void should_install_same_release_for_several_platforms_with_a_single_metadata_request() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path zippedJreDir = addExtension(jreDir, ".zip");
+        ArchiverUtils.makeZip(jreDir, zippedJreDir);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final JsonNode releases = mapper.readTree(readFile("feature_releases.json"));
+        final ArrayNode binaries = (ArrayNode) releases.get(0).path("binaries");
+        binaries.add(mapper.readTree(readFile("linux_feature_releases.json")).get(0).path("binaries").get(0));
+        ((ObjectNode) binaries.get(0).path("package")).put("checksum", DigestUtils.sha256Hex(Files.readAllBytes(zippedJreDir)));
+        ((ObjectNode) binaries.get(1).path("package")).put("checksum", DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir)));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(mapper.writeValueAsString(releases)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_windows_hotspot_16.0.1_9.zip"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(zippedJreDir));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final Model.Platform windows = new Model.Platform("windows", "x64", Model.ImageType.JRE);
+        final Model.Platform linux = new Model.Platform("linux", "x64", Model.ImageType.JRE);
+
+        //when
+        final Map<Model.Platform, JavaInstallDescription> installations = javaDownloader.installJavaMatrix(Model.MatrixInstallParams.builder()
+                .platforms(Arrays.asList(windows, linux))
+                .javaVersion(16)
+                .cleanExistingSameMajorVersion(false)
+                .javaDownloaderDir(testFolder)
+                .build());
+
+        //then
+        final Path expectedWindowsFolder = testFolder.resolve("jre/16/windows_x64/jdk-16.0.1+9--2021-04-23T09-10-06Z--windows_x64");
+        final Path expectedLinuxFolder = testFolder.resolve("jre/16/linux_x64/jdk-16.0.1+9--2021-04-23T09-10-06Z--linux_x64");
+        assertThat(installations).containsOnlyKeys(windows, linux);
+        assertThat(installations.get(windows)).isEqualTo(new JavaInstallDescription(expectedWindowsFolder, expectedWindowsFolder.resolve("jdk-16-jre")));
+        assertThat(installations.get(linux)).isEqualTo(new JavaInstallDescription(expectedLinuxFolder, expectedLinuxFolder.resolve("jdk-16-jre")));
+
+        verify(httpRequester).httpGet("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga", map(
+                "project", "jdk",
+                "sort_method", "DATE",
+                "sort_order", "DESC",
+                "page", "0",
+                "page_size", "1",
+                "jvm_impl", "hotspot",
+                "vendor", "adoptopenjdk"), Headers.of("accept", "application/json"));
+        verify(httpRequester, times(3)).httpGet(any(), any(), any());
+    }
+
+    @Test
+    public void should_install_older_release_for_several_platforms_when_latest_one_misses_some_of_them() throws Exception {
+        //given
+        final Path jreDir = makeJreDir(testFolder, 16);
+        final Path zippedJreDir = addExtension(jreDir, ".zip");
+        ArchiverUtils.makeZip(jreDir, zippedJreDir);
+        final Path tarGzdJreDir = addExtension(jreDir, ".tar.gz");
+        ArchiverUtils.createTarGzipFolder(jreDir, tarGzdJreDir);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final JsonNode windowsOnlyReleases = mapper.readTree(readFile("feature_releases.json"));
+        ((ObjectNode) windowsOnlyReleases.get(0)).put("release_name", "jdk-16.0.2+7");
+        final JsonNode releases = mapper.readTree(readFile("feature_releases.json"));
+        final ArrayNode binaries = (ArrayNode) releases.get(0).path("binaries");
+        binaries.add(mapper.readTree(readFile("linux_feature_releases.json")).get(0).path("binaries").get(0));
+        ((ObjectNode) binaries.get(0).path("package")).put("checksum", DigestUtils.sha256Hex(Files.readAllBytes(zippedJreDir)));
+        ((ObjectNode) binaries.get(1).path("package")).put("checksum", DigestUtils.sha256Hex(Files.readAllBytes(tarGzdJreDir)));
+
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(mapper.writeValueAsString(windowsOnlyReleases)))
+                .thenAnswer(inv -> mockHttpResponse(mapper.writeValueAsString(releases)));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_windows_hotspot_16.0.1_9.zip"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(zippedJreDir));
+
+        when(httpRequester.httpGet(
+                eq("https://github.com/AdoptOpenJDK/openjdk16-binaries/releases/download/jdk-16.0.1%2B9/OpenJDK16U-jre_x64_linux_hotspot_16.0.1_9.tar.gz"), any(), any()))
+                .thenAnswer(inv -> mockHttpResponse(tarGzdJreDir));
+
+        final Model.Platform windows = new Model.Platform("windows", "x64", Model.ImageType.JRE);
+        final Model.Platform linux = new Model.Platform("linux", "x64", Model.ImageType.JRE);
+
+        //when
+        final Map<Model.Platform, JavaInstallDescription> installations = javaDownloader.installJavaMatrix(Model.MatrixInstallParams.builder()
+                .platforms(Arrays.asList(windows, linux))
+                .javaVersion(16)
+                .cleanExistingSameMajorVersion(false)
+                .javaDownloaderDir(testFolder)
+                .build());
+
+        //then
+        assertThat(installations.get(windows).getInstallPath().getFileName().toString()).startsWith("jdk-16.0.1+9--");
+        assertThat(installations.get(linux).getInstallPath().getFileName().toString()).startsWith("jdk-16.0.1+9--");
+        verify(httpRequester).httpGet("https://api.adoptopenjdk.net/v3/assets/feature_releases/16/ga", map(
+                "project", "jdk",
+                "sort_method", "DATE",
+                "sort_order", "DESC",
+                "page", "1",
+                "page_size", "1",
+                "jvm_impl", "hotspot",
+                "vendor", "adoptopenjdk"), Headers.of("accept", "application/json"));
+        verify(httpRequester, times(4)).httpGet(any(), any(), any());
+    }
+
+    @Test
+    public void should_refresh_release_name_index_once_for_concurrent_callers() throws Exception {
+        //given
+        when(httpRequester.httpGet(eq("https://api.adoptopenjdk.net/v3/info/release_names"), any(), any()))
+                .thenAnswer(inv -> {
+                    Thread.sleep(200);
+                    return mockHttpResponse("{\"releases\":[\"jdk-16.0.1+9\"]}");
+                });
+
+        final int nbCallers = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(nbCallers);
+        try {
+            //when
+            final List<Future<Optional<String>>> results = new ArrayList<>();
+            for (int i = 0; i < nbCallers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return javaDownloader.findLatestRelease("16");
+                }));
+            }
+            start.countDown();
+
+            //then
+            for (Future<Optional<String>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).contains("jdk-16.0.1+9");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(httpRequester, times(1)).httpGet(eq("https://api.adoptopenjdk.net/v3/info/release_names"), any(), any());
     }
 
     @Test
@@ -449,6 +1584,47 @@ public class JavaDownloaderHighLevelTest {
         return IOUtils.toString(Objects.requireNonNull(inputStream), StandardCharsets.UTF_8);
     }
 
+    private static Path makeInstall(Path javaDownloaderDir, String parentFolder, String releaseName, Instant lastModified) throws IOException {
+        final String osArch = parentFolder.substring(parentFolder.lastIndexOf('/') + 1);
+        final Path installFolder = javaDownloaderDir.resolve(parentFolder).resolve(releaseName + "--2021-04-23T09-10-06Z--" + osArch);
+        Files.createDirectories(installFolder.resolve(releaseName + "-jre/bin"));
+        Files.write(installFolder.resolve(releaseName + "-jre/bin/java"), new byte[1024]);
+        Files.setLastModifiedTime(installFolder, FileTime.from(lastModified));
+        return installFolder;
+    }
+
+    private static TarFixtureEntry tarEntry(String name, byte type, int mode, String linkName, String content) {
+        final TarArchiveEntry entry = new TarArchiveEntry(name, type);
+        entry.setMode((entry.getMode() & ~0777) | mode);
+        if (linkName != null) {
+            entry.setLinkName(linkName);
+        }
+        final byte[] bytes = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        entry.setSize(bytes.length);
+        return new TarFixtureEntry(entry, bytes);
+    }
+
+    private static void writeTarGz(Path archive, TarFixtureEntry... entries) throws IOException {
+        try (OutputStream out = Files.newOutputStream(archive);
+             TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))) {
+            for (TarFixtureEntry entry : entries) {
+                tarOut.putArchiveEntry(entry.entry);
+                tarOut.write(entry.content);
+                tarOut.closeArchiveEntry();
+            }
+        }
+    }
+
+    private static class TarFixtureEntry {
+        private final TarArchiveEntry entry;
+        private final byte[] content;
+
+        private TarFixtureEntry(TarArchiveEntry entry, byte[] content) {
+            this.entry = entry;
+            this.content = content;
+        }
+    }
+
     public Path makeJreDir(Path path, int javaVersion) throws IOException {
         final Path jreDir = path.resolve("jdk-" + javaVersion + "-jre");
         Files.createDirectories(jreDir);
@@ -0,0 +1,75 @@
+import io.github.terjouxanthony.adopt.openjdk.downloader.JavaReleaseVersion;
+import io.github.terjouxanthony.adopt.openjdk.downloader.ReleaseNameIndex;
+import io.github.terjouxanthony.adopt.openjdk.downloader.VersionRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JavaReleaseVersionTest {
+
+    @Test
+    public void should_order_release_names_by_version() {
+        final List<String> sorted = Arrays.asList(
+                        "jdk-16.0.1+9", "jdk8u292-b10", "jdk-11.0.9.1+1", "jdk-16+36", "jdk-15.0.1+9.1",
+                        "jdk-16+36_openj9-0.25.0", "jdk-17+20-ea", "jdk-15.0.1+9", "jdk8u272-b10.1", "jdk-11.0.9+11", "jdk-17+35")
+                .stream()
+                .map(name -> JavaReleaseVersion.parse(name).get())
+                .sorted()
+                .map(JavaReleaseVersion::getReleaseName)
+                .collect(Collectors.toList());
+
+        assertThat(sorted).containsExactly(
+                "jdk8u272-b10.1", "jdk8u292-b10", "jdk-11.0.9+11", "jdk-11.0.9.1+1", "jdk-15.0.1+9", "jdk-15.0.1+9.1",
+                "jdk-16+36", "jdk-16+36_openj9-0.25.0", "jdk-16.0.1+9", "jdk-17+20-ea", "jdk-17+35");
+    }
+
+    @Test
+    public void should_reject_unknown_release_names() {
+        assertThat(JavaReleaseVersion.parse("openjdk-16")).isEmpty();
+        assertThat(JavaReleaseVersion.parse("jdk-16.0.1+9--2021-04-23T09-10-06Z--linux_x64")).isEmpty();
+    }
+
+    @Test
+    public void should_match_version_ranges() {
+        assertThat(contains("[11,12)", "jdk-11.0.9+11")).isTrue();
+        assertThat(contains("[11,12)", "jdk-11+28")).isTrue();
+        assertThat(contains("[11,12)", "jdk-12+33")).isFalse();
+        assertThat(contains("[11,12]", "jdk-12.0.2+10")).isFalse();
+        assertThat(contains("[11,12]", "jdk-12+33")).isTrue();
+        assertThat(contains("(11,12)", "jdk-11.0.1+13")).isTrue();
+        assertThat(contains("(11,12)", "jdk-11+28")).isFalse();
+        assertThat(contains("[8,9)", "jdk8u292-b10")).isTrue();
+        assertThat(contains("(,9)", "jdk-16+36")).isFalse();
+        assertThat(contains("[16.0.1+9,)", "jdk-16.0.1+9")).isTrue();
+        assertThat(contains("[16.0.1+9,)", "jdk-16.0.1+8")).isFalse();
+        assertThat(contains("[8,9),[16,17)", "jdk-16+36")).isTrue();
+        assertThat(contains("[8,9),[16,17)", "jdk-11.0.9+11")).isFalse();
+        assertThat(contains("16", "jdk-16.0.1+9")).isTrue();
+        assertThat(contains("16.0.1", "jdk-16+36")).isFalse();
+        assertThat(contains("15.0.1+9", "jdk-15.0.1+9.1")).isTrue();
+    }
+
+    @Test
+    public void should_find_latest_release_in_range() {
+        final ReleaseNameIndex index = new ReleaseNameIndex(Arrays.asList(
+                "jdk-16.0.1+9", "jdk-16.0.1+9_openj9-0.26.0", "jdk-16+36", "jdk-15.0.2+7", "jdk-15.0.2+7_openj9-0.24.0", "jdk-15+36", "not-a-release"));
+
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(index.findLatest(VersionRange.parse("[15,16)"))).contains("jdk-15.0.2+7");
+        assertThat(index.findLatest(VersionRange.parse("[16,)"))).contains("jdk-16.0.1+9");
+        assertThat(index.findLatest(VersionRange.parse("[17,)"))).isEmpty();
+        assertThat(index.findLatest(VersionRange.parse("(,15]"))).contains("jdk-15+36");
+        assertThat(index.find(VersionRange.parse("15"), false)).containsExactly("jdk-15.0.2+7", "jdk-15+36");
+        assertThat(index.find(VersionRange.parse("15"), true)).containsExactly("jdk-15.0.2+7_openj9-0.24.0", "jdk-15.0.2+7", "jdk-15+36");
+        assertThat(new ReleaseNameIndex(Collections.emptyList()).findLatest(VersionRange.parse("16"))).isEmpty();
+    }
+
+    private static boolean contains(String range, String releaseName) {
+        return VersionRange.parse(range).contains(JavaReleaseVersion.parse(releaseName).get());
+    }
+}
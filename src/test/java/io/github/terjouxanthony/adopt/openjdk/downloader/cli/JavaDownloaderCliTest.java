@@ -0,0 +1,87 @@
+package io.github.terjouxanthony.adopt.openjdk.downloader.cli;
+
+import io.github.terjouxanthony.adopt.openjdk.downloader.cli.JavaDownloaderCli.Arguments;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JavaDownloaderCliTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private Path rootFolder;
+
+    @BeforeEach
+    public void before() throws IOException {
+        rootFolder = Files.createTempDirectory("java-downloader-cli-tests");
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(rootFolder.toFile());
+    }
+
+    @Test
+    public void should_parse_flags_options_and_positionals() {
+        //when
+        final Arguments arguments = Arguments.parse(Arrays.asList("export", "--latest", "--dir", "folder", "install"));
+
+        //then
+        assertThat(arguments.has("--latest")).isTrue();
+        assertThat(arguments.get("--dir")).contains("folder");
+        assertThat(arguments.getPositionals()).containsExactly("export", "install");
+        assertThatThrownBy(() -> arguments.required("--os")).isInstanceOf(UsageException.class).hasMessage("Missing --os");
+        assertThatThrownBy(() -> Arguments.parse(Arrays.asList("--os", "linux", "--arch")))
+                .isInstanceOf(UsageException.class)
+                .hasMessage("Missing value for --arch");
+    }
+
+    @Test
+    public void should_exit_with_2_and_print_usage_on_invalid_arguments() {
+        assertThat(execute()).isEqualTo(2);
+        assertThat(execute("frobnicate")).isEqualTo(2);
+        assertThat(execute("install", "--os", "linux")).isEqualTo(2);
+        assertThat(execute("install", "--os", "linux", "--arch", "x64", "--version", "sixteen")).isEqualTo(2);
+        assertThat(execute("install", "--os", "linux", "--arch", "x64", "--version", "16", "--durability", "always")).isEqualTo(2);
+        assertThat(execute("retain", "--max-size", "tenG")).isEqualTo(2);
+        assertThat(execute("restore")).isEqualTo(2);
+
+        assertThat(out.toString()).isEmpty();
+        assertThat(err.toString()).contains("Unknown command frobnicate", "Missing --arch", "Invalid --version sixteen", "Usage:");
+    }
+
+    @Test
+    public void should_exit_with_1_and_print_a_json_error_on_library_failures() {
+        //when
+        final int exitCode = execute("export", rootFolder.resolve("snapshot.tar").toString(), rootFolder.resolve("missing").toString(),
+                "--dir", rootFolder.toString());
+
+        //then
+        assertThat(exitCode).isEqualTo(1);
+        assertThat(out.toString()).startsWith("{\"error\":").contains("\"type\":\"java.lang.IllegalArgumentException\"");
+        assertThat(err.toString()).doesNotContain("Usage:");
+    }
+
+    @Test
+    public void should_exit_with_0_and_print_the_result() {
+        assertThat(execute("list", "--dir", rootFolder.toString())).isEqualTo(0);
+        assertThat(out.toString().trim()).isEqualTo("[]");
+
+        assertThat(execute("--help")).isEqualTo(0);
+    }
+
+    private int execute(String... args) {
+        return JavaDownloaderCli.execute(args, new PrintStream(out, true), new PrintStream(err, true));
+    }
+}